@@ -0,0 +1,175 @@
+package com.alsa.picturecut.decode;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * DecoderBenchmark [ 各格式的预览解码、区域解码和分条解码耗时，需要在真机上运行 ]
+ * 结果以中位数输出到logcat及instrumentation状态，tag为DecoderBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class DecoderBenchmark {
+    private static final String TAG = "DecoderBenchmark";
+
+    /**
+     * 测试图像尺寸，约1200万像素
+     */
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    /**
+     * 预览的最大边长
+     */
+    private static final int PREVIEW_MAX_SIDE = 1920;
+
+    /**
+     * 分条解码时每条的行数，与导出相同
+     */
+    private static final int STRIP_ROWS = 256;
+
+    private static final int WARM_UP = 2;
+    private static final int ITERATIONS = 7;
+
+    @Test
+    public void jpeg() throws IOException {
+        benchmark(Bitmap.CompressFormat.JPEG, "jpg", ImageFormats.JPEG);
+    }
+
+    @Test
+    public void png() throws IOException {
+        benchmark(Bitmap.CompressFormat.PNG, "png", ImageFormats.PNG);
+    }
+
+    @Test
+    public void webp() throws IOException {
+        benchmark(Bitmap.CompressFormat.WEBP, "webp", ImageFormats.WEBP);
+    }
+
+    /**
+     * HEIF、GIF、BMP无法在设备上生成，用PNG测量ImageDecoder路径
+     */
+    @Test
+    public void platform() throws IOException {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        benchmark(Bitmap.CompressFormat.PNG, "png", ImageFormats.PNG, PlatformImageDecoder.FACTORY);
+    }
+
+    private void benchmark(Bitmap.CompressFormat compressFormat, String extension, int format) throws IOException {
+        benchmark(compressFormat, extension, format, null);
+    }
+
+    /**
+     * [ 生成测试图像后分别统计打开、预览解码、1/4区域原分辨率解码及整张分条解码的耗时 ]
+     *
+     * @param factory 指定的解码器，null为按格式选择；ImageDecoder路径内存预算不足时区域的分辨率可能更低
+     */
+    private void benchmark(Bitmap.CompressFormat compressFormat, String extension, int format,
+                           RegionDecoder.Factory factory) throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Uri uri = Uri.fromFile(createImage(context, compressFormat, extension));
+        Rect region = new Rect(WIDTH / 4, HEIGHT / 4, WIDTH * 3 / 4, HEIGHT * 3 / 4);
+        Rect strip = new Rect();
+
+        long[] open = new long[ITERATIONS];
+        long[] preview = new long[ITERATIONS];
+        long[] regionDecode = new long[ITERATIONS];
+        long[] strips = new long[ITERATIONS];
+        for (int i = -WARM_UP; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            try (RegionDecoder decoder = factory == null ? Decoders.open(context, uri)
+                    : factory.open(context, uri, format, WIDTH, HEIGHT)) {
+                long opened = System.nanoTime();
+                assertEquals(format, decoder.getFormat());
+                Bitmap bitmap = decoder.decode(Decoders.getSampleSize(WIDTH, HEIGHT, PREVIEW_MAX_SIDE));
+                long previewed = System.nanoTime();
+                assertTrue(Math.max(bitmap.getWidth(), bitmap.getHeight()) >= PREVIEW_MAX_SIDE);
+                bitmap.recycle();
+                bitmap = decoder.decodeRegion(region, 1);
+                long regionDecoded = System.nanoTime();
+                if (factory == null) {
+                    assertEquals(region.width(), bitmap.getWidth());
+                }
+                bitmap.recycle();
+                // 与映射导出相同，按条解码整张图像
+                for (int top = 0; top < HEIGHT; top += STRIP_ROWS) {
+                    strip.set(0, top, WIDTH, Math.min(HEIGHT, top + STRIP_ROWS));
+                    decoder.decodeRegion(strip, 1).recycle();
+                }
+                long stripsDecoded = System.nanoTime();
+                if (i >= 0) {
+                    open[i] = opened - start;
+                    preview[i] = previewed - opened;
+                    regionDecode[i] = regionDecoded - previewed;
+                    strips[i] = stripsDecoded - regionDecoded;
+                }
+            }
+        }
+        report(factory == null ? ImageFormats.getName(format) : "platform", open, preview, regionDecode, strips);
+    }
+
+    private static File createImage(Context context, Bitmap.CompressFormat compressFormat, String extension)
+            throws IOException {
+        File file = new File(context.getCacheDir(), "benchmark." + extension);
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        // 渐变加网格，避免纯色图像压缩后过小
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, WIDTH, HEIGHT, Color.RED, Color.BLUE, Shader.TileMode.CLAMP));
+        canvas.drawRect(0, 0, WIDTH, HEIGHT, paint);
+        paint.setShader(null);
+        paint.setColor(Color.WHITE);
+        for (int x = 0; x < WIDTH; x += 37) {
+            canvas.drawLine(x, 0, x, HEIGHT, paint);
+        }
+        for (int y = 0; y < HEIGHT; y += 41) {
+            canvas.drawLine(0, y, WIDTH, y, paint);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(compressFormat, 90, out);
+        } finally {
+            bitmap.recycle();
+        }
+        return file;
+    }
+
+    private static void report(String name, long[] open, long[] preview, long[] region, long[] strips) {
+        String result = String.format("%s open=%.2fms preview=%.2fms region=%.2fms strips=%.2fms",
+                name, median(open), median(preview), median(region), median(strips));
+        Log.i(TAG, result);
+        Bundle status = new Bundle();
+        status.putString(TAG + "." + name, result);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+}
@@ -0,0 +1,154 @@
+package com.alsa.picturecut.export;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.alsa.picturecut.edit.EditResult;
+import com.alsa.picturecut.edit.EditStack;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * BatchExportBenchmark [ 三个常用输出逐个导出与批量导出的耗时对比，需要在真机上运行 ]
+ * 结果以中位数输出到logcat及instrumentation状态，tag为BatchExportBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchExportBenchmark {
+    private static final String TAG = "BatchExportBenchmark";
+
+    /**
+     * 测试图像尺寸，约1200万像素
+     */
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    private static final int WARM_UP = 1;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    public void thumbnailBannerAndFullCrop() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Uri uri = Uri.fromFile(createImage(context));
+        // 正方形缩略图、16:9横幅、原分辨率的中间区域
+        EditResult[] edits = {
+                edit(new RectF(1000, 500, 3000, 2500), 320, 320),
+                edit(new RectF(400, 600, 3600, 2400), 1920, 1080),
+                edit(new RectF(800, 400, 3200, 2600), 0, 0)
+        };
+
+        long[] sequential = new long[ITERATIONS];
+        long[] batch = new long[ITERATIONS];
+        for (int i = -WARM_UP; i < ITERATIONS; i++) {
+            ByteArrayOutputStream[] outs = newOutputs(edits.length);
+            long start = System.nanoTime();
+            for (int j = 0; j < edits.length; j++) {
+                CropExporter.export(context, uri, edits[j], Bitmap.CompressFormat.JPEG,
+                        CropExporter.DEFAULT_QUALITY, outs[j]);
+            }
+            long exported = System.nanoTime();
+            assertSizes(edits, outs);
+
+            outs = newOutputs(edits.length);
+            List<ExportSpec> specs = new ArrayList<>();
+            for (int j = 0; j < edits.length; j++) {
+                specs.add(new ExportSpec(edits[j], Bitmap.CompressFormat.JPEG, outs[j]));
+            }
+            long batchStart = System.nanoTime();
+            BatchExporter.export(context, uri, specs);
+            long batchExported = System.nanoTime();
+            assertSizes(edits, outs);
+            if (i >= 0) {
+                sequential[i] = exported - start;
+                batch[i] = batchExported - batchStart;
+            }
+        }
+        String result = String.format("sequential=%.2fms batch=%.2fms", median(sequential), median(batch));
+        Log.i(TAG, result);
+        Bundle status = new Bundle();
+        status.putString(TAG, result);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    private static EditResult edit(RectF crop, int width, int height) {
+        EditStack stack = new EditStack();
+        stack.crop(crop);
+        if (width > 0 && height > 0) {
+            stack.resize(width, height);
+        }
+        return stack.fuse(WIDTH, HEIGHT);
+    }
+
+    private static ByteArrayOutputStream[] newOutputs(int count) {
+        ByteArrayOutputStream[] outs = new ByteArrayOutputStream[count];
+        for (int i = 0; i < count; i++) {
+            outs[i] = new ByteArrayOutputStream();
+        }
+        return outs;
+    }
+
+    private static void assertSizes(EditResult[] edits, ByteArrayOutputStream[] outs) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        for (int i = 0; i < edits.length; i++) {
+            byte[] bytes = outs[i].toByteArray();
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            assertEquals(edits[i].getOutputWidth(), options.outWidth);
+            assertEquals(edits[i].getOutputHeight(), options.outHeight);
+        }
+    }
+
+    private static File createImage(Context context) throws IOException {
+        File file = new File(context.getCacheDir(), "batch-benchmark.jpg");
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        // 渐变加网格，避免纯色图像压缩后过小
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setShader(new LinearGradient(0, 0, WIDTH, HEIGHT, Color.RED, Color.BLUE, Shader.TileMode.CLAMP));
+        canvas.drawRect(0, 0, WIDTH, HEIGHT, paint);
+        paint.setShader(null);
+        paint.setColor(Color.WHITE);
+        for (int x = 0; x < WIDTH; x += 37) {
+            canvas.drawLine(x, 0, x, HEIGHT, paint);
+        }
+        for (int y = 0; y < HEIGHT; y += 41) {
+            canvas.drawLine(0, y, WIDTH, y, paint);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+        } finally {
+            bitmap.recycle();
+        }
+        return file;
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+}
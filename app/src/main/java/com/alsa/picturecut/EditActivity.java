@@ -1,15 +1,24 @@
 package com.alsa.picturecut;
 
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.Bundle;
 import android.view.Menu;
+import android.util.Log;
 import android.view.MenuItem;
 import android.widget.FrameLayout;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.alsa.picturecut.provider.CropShareProvider;
 import com.alsa.picturecut.view.PictureCutView;
 
+import java.io.File;
+import java.io.IOException;
+
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.Unbinder;
@@ -19,6 +28,7 @@ import butterknife.Unbinder;
  * created by alsa on 2019/12/11
  */
 public class EditActivity extends AppCompatActivity {
+    private static final String TAG = "EditActivity";
 
     @BindView(R.id.container)
     FrameLayout container;
@@ -34,9 +44,14 @@ public class EditActivity extends AppCompatActivity {
     private Unbinder unbinder;
 
     /**
-     * 从相册选取的图片绝对路径
+     * 图片页面传入的图片URI，使用key "uri"
      */
-    private String mPhotoPath;
+    public static final String EXTRA_URI = "uri";
+
+    /**
+     * 从相册选取的图片URI
+     */
+    private Uri mPhotoUri;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,7 +63,15 @@ public class EditActivity extends AppCompatActivity {
 
         // 绘制图像
         pictureCutView = new PictureCutView(this);
-        pictureCutView.setPhotoPath(mPhotoPath);
+        try {
+            pictureCutView.setPhotoUri(mPhotoUri);
+        } catch (IOException e) {
+            // 无法解码时没有可编辑的内容，提示后关闭页面
+            Log.w(TAG, "decode failed: " + mPhotoUri, e);
+            Toast.makeText(this, R.string.decode_failed, Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
         // 设置可点击，否则接收不到MOVE事件
         pictureCutView.setClickable(true);
         container.addView(pictureCutView);
@@ -76,17 +99,50 @@ public class EditActivity extends AppCompatActivity {
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == R.id.menu_ok) {
             pictureCutView.cutPicure(1);
+        } else if (item.getItemId() == R.id.menu_share) {
+            shareCrop();
+        } else if (item.getItemId() == R.id.menu_rotate) {
+            pictureCutView.rotate();
+        } else if (item.getItemId() == R.id.menu_flip) {
+            pictureCutView.flipHorizontal();
+        } else if (item.getItemId() == R.id.menu_ratio_free) {
+            pictureCutView.setOutputSize(0, 0);
+        } else if (item.getItemId() == R.id.menu_size_square) {
+            pictureCutView.setOutputSize(1080, 1080);
+        } else if (item.getItemId() == R.id.menu_size_landscape) {
+            pictureCutView.setOutputSize(1200, 628);
+        } else if (item.getItemId() == R.id.menu_undo) {
+            pictureCutView.undo();
+        } else if (item.getItemId() == R.id.menu_redo) {
+            pictureCutView.redo();
         }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * 分享剪裁结果，数据由CropShareProvider按需编码，不写临时文件
+     */
+    private void shareCrop() {
+        Uri uri = CropShareProvider.publish(mPhotoUri, pictureCutView.getEditResult(), Bitmap.CompressFormat.JPEG);
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(getContentResolver().getType(uri));
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, getString(R.string.share)));
+    }
+
     /**
      * 初始化变量
      */
     private void initVariables() {
         Bundle args = getIntent().getExtras();
         if (args != null) {
-            mPhotoPath = args.getString("path");
+            // 相册页面直接传URI，旧的调用方式传绝对路径
+            mPhotoUri = args.getParcelable(EXTRA_URI);
+            String path = args.getString("path");
+            if (mPhotoUri == null && path != null) {
+                mPhotoUri = Uri.fromFile(new File(path));
+            }
         }
     }
 }
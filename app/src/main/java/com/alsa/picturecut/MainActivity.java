@@ -5,12 +5,11 @@ import android.content.Intent;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.alsa.library.PermissionManager;
 import com.alsa.library.listener.PermissionCallback;
-import com.alsa.picturecut.utils.AlbumUtil;
+import com.alsa.picturecut.gallery.GalleryActivity;
 
 import java.util.List;
 
@@ -25,22 +24,16 @@ import butterknife.Unbinder;
 public class MainActivity extends AppCompatActivity implements PermissionCallback {
 
     /**
-     * 读写权限
+     * 读取权限，分享剪裁结果走CropShareProvider，不需要写权限
      */
     public static final String[] permissions = new String[]{
-            Manifest.permission.WRITE_EXTERNAL_STORAGE,
             Manifest.permission.READ_EXTERNAL_STORAGE
     };
 
     /**
      * 权限申请的请求码
      */
-    public static final int WRITE_PERMISSION_REQUEST_CODE = 101;
-
-    /**
-     * 打开相册的请求码
-     */
-    public static final int GALLERY_REQUEST_CODE = 102;
+    public static final int READ_PERMISSION_REQUEST_CODE = 101;
 
     /**
      * ButterKnife对象，解绑时需要
@@ -63,13 +56,13 @@ public class MainActivity extends AppCompatActivity implements PermissionCallbac
     @OnClick(R.id.button)
     void openAlbum() {
         // 申请权限
-        PermissionManager.requestPermissions(this, WRITE_PERMISSION_REQUEST_CODE, permissions);
+        PermissionManager.requestPermissions(this, READ_PERMISSION_REQUEST_CODE, permissions);
     }
 
     @Override
     public void onPermissionGranted(int requestCode, List<String> permissions) {
-        // 打开相册
-        AlbumUtil.openPhotoAlbum(this, GALLERY_REQUEST_CODE);
+        // 打开应用内相册，选中的图片URI直接交给编辑页面
+        startActivity(new Intent(this, GalleryActivity.class));
     }
 
     @Override
@@ -84,18 +77,4 @@ public class MainActivity extends AppCompatActivity implements PermissionCallbac
         // 使用此方法处理权限，调用onPermissionGranted()和onPermissionDenied()
         PermissionManager.onRequestPermissionResult(requestCode, permissions, grantResults, this);
     }
-
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == GALLERY_REQUEST_CODE) {
-            // 如果已选择图片，打开编辑页面
-            if (data.getData() != null) {
-                String photoPath = AlbumUtil.getRealPathFromUri(this, data.getData());
-                Intent intent = new Intent(MainActivity.this, EditActivity.class);
-                intent.putExtra("path", photoPath);
-                startActivity(intent);
-            }
-        }
-    }
 }
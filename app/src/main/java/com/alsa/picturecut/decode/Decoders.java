@@ -0,0 +1,106 @@
+package com.alsa.picturecut.decode;
+
+import android.content.Context;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Decoders [ 解码器注册表，读取文件头识别格式后选择第一个支持该格式的解码器 ]
+ * 默认顺序：BitmapRegionDecoder（JPEG/PNG/WebP）-> ImageDecoder（API 28+）-> 按内存预算采样的兜底解码
+ */
+public class Decoders {
+    /**
+     * 已注册的解码器，靠前的优先
+     */
+    private static final List<RegionDecoder.Factory> sFactories = new CopyOnWriteArrayList<>(new RegionDecoder.Factory[]{
+            SystemRegionDecoder.FACTORY,
+            PlatformImageDecoder.FACTORY,
+            SampledDecoder.FACTORY
+    });
+
+    private Decoders() {
+    }
+
+    /**
+     * [ 注册解码器，优先于已有的解码器 ]
+     *
+     * @param factory 解码器的创建者
+     */
+    public static void register(RegionDecoder.Factory factory) {
+        sFactories.add(0, factory);
+    }
+
+    /**
+     * [ 识别格式和尺寸并打开解码器 ]
+     *
+     * @param context context
+     * @param uri     图片URI
+     * @return 解码器，调用方负责关闭
+     * @throws IOException 无法打开或没有支持该格式的解码器
+     */
+    public static RegionDecoder open(Context context, Uri uri) throws IOException {
+        int format;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream raw = context.getContentResolver().openInputStream(uri)) {
+            if (raw == null) {
+                throw new IOException("cannot open " + uri);
+            }
+            // 读取文件头后回到开头，只打开一次获取格式和宽高
+            InputStream in = new BufferedInputStream(raw);
+            in.mark(ImageFormats.HEADER_LENGTH);
+            byte[] header = new byte[ImageFormats.HEADER_LENGTH];
+            format = ImageFormats.sniff(header, readFully(in, header));
+            in.reset();
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("unsupported " + ImageFormats.getName(format) + " image: " + uri);
+        }
+        for (RegionDecoder.Factory factory : sFactories) {
+            if (factory.supports(format)) {
+                return factory.open(context, uri, format, options.outWidth, options.outHeight);
+            }
+        }
+        throw new IOException("no decoder for " + ImageFormats.getName(format) + ": " + uri);
+    }
+
+    /**
+     * [ 计算采样率：不超过最大边长的最小2的幂 ]
+     *
+     * @param width   宽
+     * @param height  高
+     * @param maxSide 采样后的最大边长
+     * @return 采样率
+     */
+    public static int getSampleSize(int width, int height, int maxSide) {
+        int sourceMaxSide = Math.max(width, height);
+        int sampleSize = 1;
+        while (sourceMaxSide / (sampleSize * 2) >= maxSide) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+}
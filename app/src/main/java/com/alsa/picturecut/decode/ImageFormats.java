@@ -0,0 +1,89 @@
+package com.alsa.picturecut.decode;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ImageFormats [ 根据文件头的魔数识别图像格式，不依赖扩展名和MIME类型 ]
+ */
+public class ImageFormats {
+    public static final int UNKNOWN = 0;
+    public static final int JPEG = 1;
+    public static final int PNG = 2;
+    public static final int WEBP = 3;
+    public static final int HEIF = 4;
+    public static final int GIF = 5;
+    public static final int BMP = 6;
+
+    /**
+     * 识别格式需要读取的文件头长度
+     */
+    public static final int HEADER_LENGTH = 16;
+
+    private static final String[] NAMES = {"unknown", "jpeg", "png", "webp", "heif", "gif", "bmp"};
+
+    /**
+     * HEIF的ftyp品牌
+     */
+    private static final String[] HEIF_BRANDS = {"heic", "heix", "hevc", "hevx", "heim", "heis", "mif1", "msf1"};
+
+    private ImageFormats() {
+    }
+
+    /**
+     * [ 根据文件头识别格式 ]
+     *
+     * @param header 文件头
+     * @param length 有效长度
+     * @return 格式，无法识别时为{@link #UNKNOWN}
+     */
+    public static int sniff(byte[] header, int length) {
+        if (startsWith(header, length, 0, 0xff, 0xd8, 0xff)) {
+            return JPEG;
+        }
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a)) {
+            return PNG;
+        }
+        if (startsWith(header, length, 0, 'R', 'I', 'F', 'F') && startsWith(header, length, 8, 'W', 'E', 'B', 'P')) {
+            return WEBP;
+        }
+        if (startsWith(header, length, 4, 'f', 't', 'y', 'p') && length >= 12) {
+            // ISO BMFF，主品牌决定是否为HEIF
+            String brand = new String(header, 8, 4, StandardCharsets.US_ASCII);
+            for (String heifBrand : HEIF_BRANDS) {
+                if (heifBrand.equals(brand)) {
+                    return HEIF;
+                }
+            }
+            return UNKNOWN;
+        }
+        if (startsWith(header, length, 0, 'G', 'I', 'F', '8')) {
+            return GIF;
+        }
+        if (startsWith(header, length, 0, 'B', 'M')) {
+            return BMP;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * 获取格式名称，用于日志和统计
+     *
+     * @param format 格式
+     * @return 名称
+     */
+    public static String getName(int format) {
+        return format >= 0 && format < NAMES.length ? NAMES[format] : NAMES[UNKNOWN];
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, int... magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xff) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
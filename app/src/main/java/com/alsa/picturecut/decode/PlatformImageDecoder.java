@@ -0,0 +1,120 @@
+package com.alsa.picturecut.decode;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+
+/**
+ * PlatformImageDecoder [ 基于ImageDecoder的解码，API 28+，支持GIF、BMP等没有区域解码的格式 ]
+ * ImageDecoder每次都要解析整个文件，区域解码时按采样率整张解码一次并缓存，各区域从中取出，
+ * 分条导出时不会每条都解码一遍；缓存的预算及超出预算时的处理与{@link SampledDecoder}相同
+ */
+@RequiresApi(api = Build.VERSION_CODES.P)
+class PlatformImageDecoder implements RegionDecoder {
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public boolean supports(int format) {
+            // 未识别的格式交给兜底解码，由BitmapFactory决定能否解码
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && format != ImageFormats.UNKNOWN;
+        }
+
+        @Override
+        public RegionDecoder open(Context context, Uri uri, int format, int width, int height) {
+            return new PlatformImageDecoder(ImageDecoder.createSource(context.getContentResolver(), uri),
+                    format, width, height);
+        }
+    };
+
+    /**
+     * 可重复解码的数据源
+     */
+    private final ImageDecoder.Source mSource;
+    private final int mFormat;
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * 整张图像的采样结果及其采样率
+     */
+    private Bitmap mSampled;
+    private int mSampledSize;
+
+    private PlatformImageDecoder(ImageDecoder.Source source, int format, int width, int height) {
+        mSource = source;
+        mFormat = format;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public int getFormat() {
+        return mFormat;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public Bitmap decode(int sampleSize) throws IOException {
+        // 预览只解码一次，不缓存
+        return decodeSampled(Math.max(1, sampleSize));
+    }
+
+    @Override
+    public synchronized Bitmap decodeRegion(Rect region, int sampleSize) throws IOException {
+        Rect bounds = new Rect(region);
+        if (!bounds.intersect(0, 0, mWidth, mHeight)) {
+            throw new IOException("region out of bounds: " + region);
+        }
+        sampleSize = SampledDecoder.fitMemory(mWidth, mHeight, Math.max(1, sampleSize));
+        if (mSampled == null || mSampledSize != sampleSize) {
+            close();
+            mSampled = decodeSampled(sampleSize);
+            mSampledSize = sampleSize;
+        }
+        Bitmap bitmap = SampledDecoder.crop(mSampled, mSampledSize, bounds);
+        if (bitmap == mSampled) {
+            // 区域为整张图像时返回的是缓存本身，交给调用方，不再缓存
+            mSampled = null;
+        }
+        return bitmap;
+    }
+
+    @Override
+    public synchronized void close() {
+        // ImageDecoder在每次解码结束时已关闭，只需回收缓存
+        if (mSampled != null) {
+            mSampled.recycle();
+            mSampled = null;
+        }
+    }
+
+    /**
+     * [ 按采样率解码整张图像 ]
+     *
+     * @param sampleSize 采样率
+     * @return 图像
+     * @throws IOException 解码失败
+     */
+    private Bitmap decodeSampled(int sampleSize) throws IOException {
+        return ImageDecoder.decodeBitmap(mSource, (decoder, info, source) -> {
+            // 需要读取像素，不使用HARDWARE
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+            decoder.setTargetSampleSize(sampleSize);
+        });
+    }
+}
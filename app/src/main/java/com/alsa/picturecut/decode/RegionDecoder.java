@@ -0,0 +1,76 @@
+package com.alsa.picturecut.decode;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * RegionDecoder [ 按采样率解码整张图像或指定区域的解码器，由{@link Decoders}按格式选择 ]
+ * 一个实例对应一张图像，可多次解码不同区域，用完后关闭
+ */
+public interface RegionDecoder extends Closeable {
+    /**
+     * @return 格式，见{@link ImageFormats}
+     */
+    int getFormat();
+
+    /**
+     * @return 原图宽
+     */
+    int getWidth();
+
+    /**
+     * @return 原图高
+     */
+    int getHeight();
+
+    /**
+     * [ 按采样率解码整张图像 ]
+     *
+     * @param sampleSize 采样率，2的幂
+     * @return 图像，宽高约为原图的1/sampleSize，内存不足时可能更小
+     * @throws IOException 解码失败
+     */
+    Bitmap decode(int sampleSize) throws IOException;
+
+    /**
+     * [ 按采样率解码指定区域 ]
+     *
+     * @param region     区域，原图像素坐标，超出原图的部分被忽略
+     * @param sampleSize 采样率，2的幂
+     * @return 区域图像，宽高约为区域的1/sampleSize，内存不足时可能更小，调用方以实际尺寸为准
+     * @throws IOException 解码失败
+     */
+    Bitmap decodeRegion(Rect region, int sampleSize) throws IOException;
+
+    @Override
+    void close();
+
+    /**
+     * 解码器的创建者，可通过{@link Decoders#register(Factory)}注册
+     */
+    interface Factory {
+        /**
+         * @param format 格式，见{@link ImageFormats}
+         * @return 当前系统上是否可以解码该格式
+         */
+        boolean supports(int format);
+
+        /**
+         * [ 打开图像 ]
+         *
+         * @param context context
+         * @param uri     图片URI
+         * @param format  格式
+         * @param width   原图宽
+         * @param height  原图高
+         * @return 解码器
+         * @throws IOException 无法打开
+         */
+        RegionDecoder open(Context context, Uri uri, int format, int width, int height) throws IOException;
+    }
+}
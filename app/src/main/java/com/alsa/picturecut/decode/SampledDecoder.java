@@ -0,0 +1,159 @@
+package com.alsa.picturecut.decode;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * SampledDecoder [ 兜底解码：不支持区域解码的格式按内存预算采样解码一次，各区域从中取出 ]
+ * 整张图像的采样结果不超过最大内存的1/8，分条导出时各条共用同一份采样结果；
+ * 预算不足时返回的图像比请求的采样率更粗，调用方以图像的实际尺寸为准
+ */
+class SampledDecoder implements RegionDecoder {
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public boolean supports(int format) {
+            return true;
+        }
+
+        @Override
+        public RegionDecoder open(Context context, Uri uri, int format, int width, int height) {
+            return new SampledDecoder(context, uri, format, width, height);
+        }
+    };
+
+    /**
+     * 采样结果占最大内存的比例上限
+     */
+    static final int MEMORY_FRACTION = 8;
+
+    private final Context mContext;
+    private final Uri mUri;
+    private final int mFormat;
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * 整张图像的采样结果及其采样率
+     */
+    private Bitmap mSampled;
+    private int mSampledSize;
+
+    private SampledDecoder(Context context, Uri uri, int format, int width, int height) {
+        mContext = context.getApplicationContext();
+        mUri = uri;
+        mFormat = format;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public int getFormat() {
+        return mFormat;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public Bitmap decode(int sampleSize) throws IOException {
+        return decodeRegion(new Rect(0, 0, mWidth, mHeight), sampleSize);
+    }
+
+    @Override
+    public synchronized Bitmap decodeRegion(Rect region, int sampleSize) throws IOException {
+        Rect bounds = new Rect(region);
+        if (!bounds.intersect(0, 0, mWidth, mHeight)) {
+            throw new IOException("region out of bounds: " + region);
+        }
+        Bitmap sampled = getSampled(Math.max(1, sampleSize));
+        // 内存预算不足时采样率更大，不放大回请求的分辨率，放大既不增加细节又占用更多内存
+        Bitmap bitmap = crop(sampled, mSampledSize, bounds);
+        if (bitmap == sampled) {
+            // 区域为整张图像时返回的是缓存本身，交给调用方，不再缓存
+            mSampled = null;
+        }
+        return bitmap;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (mSampled != null) {
+            mSampled.recycle();
+            mSampled = null;
+        }
+    }
+
+    /**
+     * [ 获取整张图像的采样结果，采样率不小于请求值且不超过内存预算 ]
+     *
+     * @param sampleSize 请求的采样率
+     * @return 采样结果
+     * @throws IOException 解码失败
+     */
+    private Bitmap getSampled(int sampleSize) throws IOException {
+        sampleSize = fitMemory(mWidth, mHeight, sampleSize);
+        if (mSampled != null && mSampledSize == sampleSize) {
+            return mSampled;
+        }
+        close();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        try (InputStream in = mContext.getContentResolver().openInputStream(mUri)) {
+            if (in == null) {
+                throw new IOException("cannot open " + mUri);
+            }
+            mSampled = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (mSampled == null) {
+            throw new IOException("decode failed: " + mUri);
+        }
+        mSampledSize = sampleSize;
+        return mSampled;
+    }
+
+    /**
+     * [ 增大采样率直到整张图像的采样结果不超过内存预算 ]
+     *
+     * @param width      原图宽
+     * @param height     原图高
+     * @param sampleSize 请求的采样率
+     * @return 不小于请求值的采样率
+     */
+    static int fitMemory(int width, int height, int sampleSize) {
+        long budget = Runtime.getRuntime().maxMemory() / MEMORY_FRACTION;
+        while (4L * Decoders.ceilDiv(width, sampleSize) * Decoders.ceilDiv(height, sampleSize) > budget) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * [ 从整张图像的采样结果中取出区域 ]
+     *
+     * @param sampled     采样结果
+     * @param sampledSize 采样结果的采样率
+     * @param bounds      区域，原图像素坐标，已限制在原图内
+     * @return 区域图像，区域为整张图像时为采样结果本身
+     */
+    static Bitmap crop(Bitmap sampled, int sampledSize, Rect bounds) {
+        // 原图坐标 -> 采样结果坐标
+        int left = Math.min(bounds.left / sampledSize, sampled.getWidth() - 1);
+        int top = Math.min(bounds.top / sampledSize, sampled.getHeight() - 1);
+        int right = Math.max(left + 1, Math.min(Decoders.ceilDiv(bounds.right, sampledSize), sampled.getWidth()));
+        int bottom = Math.max(top + 1, Math.min(Decoders.ceilDiv(bounds.bottom, sampledSize), sampled.getHeight()));
+        return Bitmap.createBitmap(sampled, left, top, right - left, bottom - top);
+    }
+}
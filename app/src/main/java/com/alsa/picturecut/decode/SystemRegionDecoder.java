@@ -0,0 +1,84 @@
+package com.alsa.picturecut.decode;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * SystemRegionDecoder [ 基于BitmapRegionDecoder的区域解码，只解码区域覆盖的部分 ]
+ * 支持JPEG、PNG、WebP，API 28+还支持HEIF；BitmapRegionDecoder内部加锁，可在多个线程中解码不同区域
+ */
+class SystemRegionDecoder implements RegionDecoder {
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public boolean supports(int format) {
+            return format == ImageFormats.JPEG || format == ImageFormats.PNG || format == ImageFormats.WEBP
+                    || format == ImageFormats.HEIF && Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+        }
+
+        @Override
+        public RegionDecoder open(Context context, Uri uri, int format, int width, int height) throws IOException {
+            try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    throw new IOException("cannot open " + uri);
+                }
+                return new SystemRegionDecoder(BitmapRegionDecoder.newInstance(in, false), format);
+            }
+        }
+    };
+
+    private final BitmapRegionDecoder mDecoder;
+    private final int mFormat;
+
+    private SystemRegionDecoder(BitmapRegionDecoder decoder, int format) {
+        mDecoder = decoder;
+        mFormat = format;
+    }
+
+    @Override
+    public int getFormat() {
+        return mFormat;
+    }
+
+    @Override
+    public int getWidth() {
+        return mDecoder.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return mDecoder.getHeight();
+    }
+
+    @Override
+    public Bitmap decode(int sampleSize) throws IOException {
+        return decodeRegion(new Rect(0, 0, getWidth(), getHeight()), sampleSize);
+    }
+
+    @Override
+    public Bitmap decodeRegion(Rect region, int sampleSize) throws IOException {
+        Rect bounds = new Rect(region);
+        if (!bounds.intersect(0, 0, getWidth(), getHeight())) {
+            throw new IOException("region out of bounds: " + region);
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = Math.max(1, sampleSize);
+        Bitmap bitmap = mDecoder.decodeRegion(bounds, options);
+        if (bitmap == null) {
+            throw new IOException("decode region failed: " + bounds);
+        }
+        return bitmap;
+    }
+
+    @Override
+    public void close() {
+        mDecoder.recycle();
+    }
+}
@@ -0,0 +1,246 @@
+package com.alsa.picturecut.edit;
+
+/**
+ * EditHistory [ 撤销/重做历史，基本类型环形缓冲区 ]
+ * 每条记录只有剪裁区域、几何变换和剪裁约束共10个float，不保存任何图像；
+ * 缓冲区写满后覆盖最早的记录，撤销和重做都是O(1)
+ */
+public class EditHistory {
+    /**
+     * 默认可保存的记录数，每条40字节
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * 水平翻转、垂直翻转的标志位
+     */
+    public static final int FLAG_FLIP_HORIZONTAL = 1;
+    public static final int FLAG_FLIP_VERTICAL = 1 << 1;
+
+    /**
+     * 每条记录的字段偏移
+     */
+    private static final int LEFT = 0;
+    private static final int TOP = 1;
+    private static final int RIGHT = 2;
+    private static final int BOTTOM = 3;
+    private static final int QUARTER_TURNS = 4;
+    private static final int FLIP_FLAGS = 5;
+    private static final int STRAIGHTEN = 6;
+    private static final int ASPECT_RATIO = 7;
+    private static final int OUTPUT_WIDTH = 8;
+    private static final int OUTPUT_HEIGHT = 9;
+    private static final int STRIDE = 10;
+
+    /**
+     * 环形缓冲区
+     */
+    private final float[] mData;
+
+    /**
+     * 最大记录数
+     */
+    private final int mCapacity;
+
+    /**
+     * 最早一条记录在缓冲区中的位置
+     */
+    private int mStart;
+
+    /**
+     * 已保存的记录数，包括可重做的记录
+     */
+    private int mSize;
+
+    /**
+     * 当前记录相对mStart的序号，-1表示没有记录
+     */
+    private int mCursor = -1;
+
+    public EditHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EditHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity < 1");
+        }
+        mCapacity = capacity;
+        mData = new float[capacity * STRIDE];
+    }
+
+    /**
+     * [ 记录一步编辑，丢弃所有可重做的记录 ]
+     *
+     * @param left         剪裁区域左边，相对编辑结果宽度 0~1
+     * @param top          剪裁区域上边，相对编辑结果高度 0~1
+     * @param right        剪裁区域右边，相对编辑结果宽度 0~1
+     * @param bottom       剪裁区域下边，相对编辑结果高度 0~1
+     * @param quarterTurns 顺时针旋转90°的次数
+     * @param flipFlags    翻转标志位
+     * @param straighten   微调角度
+     * @param aspectRatio  锁定的宽高比，0为自由剪裁
+     * @param outputWidth  输出宽，0为不限制
+     * @param outputHeight 输出高，0为不限制
+     */
+    public void push(float left, float top, float right, float bottom, int quarterTurns, int flipFlags, float straighten,
+                     float aspectRatio, int outputWidth, int outputHeight) {
+        if (mCursor + 1 < mCapacity) {
+            mCursor++;
+        } else {
+            // 已写满，覆盖最早的记录
+            mStart = (mStart + 1) % mCapacity;
+        }
+        mSize = mCursor + 1;
+        write(left, top, right, bottom, quarterTurns, flipFlags, straighten, aspectRatio, outputWidth, outputHeight);
+    }
+
+    /**
+     * [ 替换当前记录，不产生新的撤销步骤，没有记录时等同于{@link #push} ]
+     * 用于初始状态在记录之后才确定的情况，如异步计算的推荐剪裁
+     *
+     * @param left         剪裁区域左边，相对编辑结果宽度 0~1
+     * @param top          剪裁区域上边，相对编辑结果高度 0~1
+     * @param right        剪裁区域右边，相对编辑结果宽度 0~1
+     * @param bottom       剪裁区域下边，相对编辑结果高度 0~1
+     * @param quarterTurns 顺时针旋转90°的次数
+     * @param flipFlags    翻转标志位
+     * @param straighten   微调角度
+     * @param aspectRatio  锁定的宽高比，0为自由剪裁
+     * @param outputWidth  输出宽，0为不限制
+     * @param outputHeight 输出高，0为不限制
+     */
+    public void replace(float left, float top, float right, float bottom, int quarterTurns, int flipFlags, float straighten,
+                        float aspectRatio, int outputWidth, int outputHeight) {
+        if (mCursor < 0) {
+            push(left, top, right, bottom, quarterTurns, flipFlags, straighten, aspectRatio, outputWidth, outputHeight);
+            return;
+        }
+        write(left, top, right, bottom, quarterTurns, flipFlags, straighten, aspectRatio, outputWidth, outputHeight);
+    }
+
+    /**
+     * 写入当前记录
+     */
+    private void write(float left, float top, float right, float bottom, int quarterTurns, int flipFlags, float straighten,
+                       float aspectRatio, int outputWidth, int outputHeight) {
+        int offset = offset(mCursor);
+        mData[offset + LEFT] = left;
+        mData[offset + TOP] = top;
+        mData[offset + RIGHT] = right;
+        mData[offset + BOTTOM] = bottom;
+        mData[offset + QUARTER_TURNS] = quarterTurns;
+        mData[offset + FLIP_FLAGS] = flipFlags;
+        mData[offset + STRAIGHTEN] = straighten;
+        mData[offset + ASPECT_RATIO] = aspectRatio;
+        mData[offset + OUTPUT_WIDTH] = outputWidth;
+        mData[offset + OUTPUT_HEIGHT] = outputHeight;
+    }
+
+    /**
+     * 当前记录是否与给定值相同，相同时无需重复记录，参数同{@link #push}
+     */
+    public boolean isCurrent(float left, float top, float right, float bottom, int quarterTurns, int flipFlags, float straighten,
+                             float aspectRatio, int outputWidth, int outputHeight) {
+        if (mCursor < 0) {
+            return false;
+        }
+        int offset = offset(mCursor);
+        return mData[offset + LEFT] == left && mData[offset + TOP] == top
+                && mData[offset + RIGHT] == right && mData[offset + BOTTOM] == bottom
+                && mData[offset + QUARTER_TURNS] == quarterTurns && mData[offset + FLIP_FLAGS] == flipFlags
+                && mData[offset + STRAIGHTEN] == straighten && mData[offset + ASPECT_RATIO] == aspectRatio
+                && mData[offset + OUTPUT_WIDTH] == outputWidth && mData[offset + OUTPUT_HEIGHT] == outputHeight;
+    }
+
+    public boolean canUndo() {
+        return mCursor > 0;
+    }
+
+    public boolean canRedo() {
+        return mCursor + 1 < mSize;
+    }
+
+    /**
+     * 撤销，当前记录回到上一条
+     *
+     * @return 是否撤销成功
+     */
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        mCursor--;
+        return true;
+    }
+
+    /**
+     * 重做，当前记录前进到下一条
+     *
+     * @return 是否重做成功
+     */
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        mCursor++;
+        return true;
+    }
+
+    public void clear() {
+        mStart = 0;
+        mSize = 0;
+        mCursor = -1;
+    }
+
+    public float getLeft() {
+        return get(LEFT);
+    }
+
+    public float getTop() {
+        return get(TOP);
+    }
+
+    public float getRight() {
+        return get(RIGHT);
+    }
+
+    public float getBottom() {
+        return get(BOTTOM);
+    }
+
+    public int getQuarterTurns() {
+        return (int) get(QUARTER_TURNS);
+    }
+
+    public int getFlipFlags() {
+        return (int) get(FLIP_FLAGS);
+    }
+
+    public float getStraighten() {
+        return get(STRAIGHTEN);
+    }
+
+    public float getAspectRatio() {
+        return get(ASPECT_RATIO);
+    }
+
+    public int getOutputWidth() {
+        return (int) get(OUTPUT_WIDTH);
+    }
+
+    public int getOutputHeight() {
+        return (int) get(OUTPUT_HEIGHT);
+    }
+
+    private float get(int field) {
+        if (mCursor < 0) {
+            throw new IllegalStateException("empty history");
+        }
+        return mData[offset(mCursor) + field];
+    }
+
+    private int offset(int index) {
+        return ((mStart + index) % mCapacity) * STRIDE;
+    }
+}
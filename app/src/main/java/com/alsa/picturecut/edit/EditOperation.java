@@ -0,0 +1,75 @@
+package com.alsa.picturecut.edit;
+
+import android.graphics.RectF;
+
+/**
+ * EditOperation [ 单步编辑操作，只记录参数，不持有图像 ]
+ */
+public class EditOperation {
+    /**
+     * 操作类型
+     */
+    public static final int CROP = 1;
+    public static final int ROTATE = 2;
+    public static final int FLIP_HORIZONTAL = 3;
+    public static final int FLIP_VERTICAL = 4;
+    public static final int STRAIGHTEN = 5;
+    public static final int RESIZE = 6;
+
+    /**
+     * 操作类型
+     */
+    final int type;
+
+    /**
+     * ROTATE为顺时针90°的次数，STRAIGHTEN为角度，其他操作不使用
+     */
+    final float value;
+
+    /**
+     * CROP的剪裁区域，坐标为执行此操作前的图像坐标；RESIZE为(0, 0, 输出宽, 输出高)
+     */
+    final RectF rect;
+
+    private EditOperation(int type, float value, RectF rect) {
+        this.type = type;
+        this.value = value;
+        this.rect = rect;
+    }
+
+    static EditOperation crop(RectF rect) {
+        return new EditOperation(CROP, 0, new RectF(rect));
+    }
+
+    static EditOperation rotate(int quarterTurns) {
+        return new EditOperation(ROTATE, quarterTurns, null);
+    }
+
+    static EditOperation flipHorizontal() {
+        return new EditOperation(FLIP_HORIZONTAL, 0, null);
+    }
+
+    static EditOperation flipVertical() {
+        return new EditOperation(FLIP_VERTICAL, 0, null);
+    }
+
+    static EditOperation straighten(float degrees) {
+        return new EditOperation(STRAIGHTEN, degrees, null);
+    }
+
+    static EditOperation resize(int width, int height) {
+        return new EditOperation(RESIZE, 0, new RectF(0, 0, width, height));
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public RectF getRect() {
+        return rect == null ? null : new RectF(rect);
+    }
+}
@@ -0,0 +1,98 @@
+package com.alsa.picturecut.edit;
+
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * EditResult [ 编辑栈融合后的结果：一个仿射矩阵加输出尺寸 ]
+ * 矩阵把原图坐标映射到输出坐标，输出图像为(0, 0, width, height)
+ */
+public class EditResult {
+    /**
+     * 原图坐标 -> 输出坐标
+     */
+    private final Matrix mMatrix;
+
+    /**
+     * 输出宽高
+     */
+    private final float mWidth;
+    private final float mHeight;
+
+    EditResult(Matrix matrix, float width, float height) {
+        mMatrix = new Matrix(matrix);
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * 获取原图到输出的变换矩阵
+     *
+     * @return 矩阵副本
+     */
+    public Matrix getMatrix() {
+        return new Matrix(mMatrix);
+    }
+
+    public float getWidth() {
+        return mWidth;
+    }
+
+    public float getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 输出图像的像素宽度
+     *
+     * @return >=1
+     */
+    public int getOutputWidth() {
+        return Math.max(1, Math.round(mWidth));
+    }
+
+    /**
+     * 输出图像的像素高度
+     *
+     * @return >=1
+     */
+    public int getOutputHeight() {
+        return Math.max(1, Math.round(mHeight));
+    }
+
+    /**
+     * [ 原图每个像素在输出中的最大边长，小于1表示输出比原图小 ]
+     * 导出时据此选择解码采样率，采样后的分辨率仍不低于输出
+     *
+     * @return 缩放比
+     */
+    public float getMaxScale() {
+        float[] values = new float[9];
+        mMatrix.getValues(values);
+        // 原图x、y方向的单位向量映射后的长度，包含旋转
+        float scaleX = (float) Math.hypot(values[Matrix.MSCALE_X], values[Matrix.MSKEW_Y]);
+        float scaleY = (float) Math.hypot(values[Matrix.MSKEW_X], values[Matrix.MSCALE_Y]);
+        return Math.max(scaleX, scaleY);
+    }
+
+    /**
+     * [ 计算输出图像依赖的原图区域，导出时只需解码此区域 ]
+     *
+     * @param sourceWidth  原图宽
+     * @param sourceHeight 原图高
+     * @return 原图像素区域
+     */
+    public Rect getSourceBounds(int sourceWidth, int sourceHeight) {
+        Matrix inverse = new Matrix();
+        mMatrix.invert(inverse);
+        RectF bounds = new RectF(0, 0, mWidth, mHeight);
+        inverse.mapRect(bounds);
+        Rect rect = new Rect();
+        bounds.roundOut(rect);
+        if (!rect.intersect(0, 0, sourceWidth, sourceHeight)) {
+            rect.setEmpty();
+        }
+        return rect;
+    }
+}
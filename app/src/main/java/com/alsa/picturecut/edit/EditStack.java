@@ -0,0 +1,197 @@
+package com.alsa.picturecut.edit;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EditStack [ 非破坏性编辑栈 ]
+ * 剪裁、90°旋转、翻转、微调角度、缩放到输出尺寸都只记录为操作，不生成中间图像；
+ * 导出或预览时由{@link #fuse(int, int)}融合为一个矩阵和一个输出尺寸，只需一次重采样
+ */
+public class EditStack {
+    /**
+     * 操作列表
+     */
+    private final List<EditOperation> mOperations = new ArrayList<>();
+
+    public EditStack() {
+    }
+
+    public EditStack(EditStack other) {
+        mOperations.addAll(other.mOperations);
+    }
+
+    /**
+     * 剪裁
+     *
+     * @param rect 剪裁区域，当前编辑结果的坐标
+     */
+    public void crop(RectF rect) {
+        mOperations.add(EditOperation.crop(rect));
+    }
+
+    /**
+     * 顺时针旋转90°的整数倍，与上一步旋转合并
+     *
+     * @param quarterTurns 90°的次数，负数为逆时针
+     */
+    public void rotate(int quarterTurns) {
+        EditOperation last = getLast();
+        if (last != null && last.type == EditOperation.ROTATE) {
+            mOperations.remove(mOperations.size() - 1);
+            quarterTurns += (int) last.value;
+        }
+        quarterTurns = ((quarterTurns % 4) + 4) % 4;
+        if (quarterTurns != 0) {
+            mOperations.add(EditOperation.rotate(quarterTurns));
+        }
+    }
+
+    /**
+     * 水平翻转，与上一步水平翻转抵消
+     */
+    public void flipHorizontal() {
+        flip(EditOperation.FLIP_HORIZONTAL);
+    }
+
+    /**
+     * 垂直翻转，与上一步垂直翻转抵消
+     */
+    public void flipVertical() {
+        flip(EditOperation.FLIP_VERTICAL);
+    }
+
+    /**
+     * 微调角度，旋转后放大以填满画面，与上一步微调合并
+     *
+     * @param degrees 角度，正数为顺时针
+     */
+    public void straighten(float degrees) {
+        EditOperation last = getLast();
+        if (last != null && last.type == EditOperation.STRAIGHTEN) {
+            mOperations.remove(mOperations.size() - 1);
+            degrees += last.value;
+        }
+        if (degrees != 0) {
+            mOperations.add(EditOperation.straighten(degrees));
+        }
+    }
+
+    /**
+     * 缩放到指定的输出尺寸，与上一步缩放合并
+     * 缩放与其他操作融合在同一个矩阵中，导出时直接重采样到目标尺寸
+     *
+     * @param width  输出宽，像素
+     * @param height 输出高，像素
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size <= 0: " + width + "x" + height);
+        }
+        EditOperation last = getLast();
+        if (last != null && last.type == EditOperation.RESIZE) {
+            mOperations.remove(mOperations.size() - 1);
+        }
+        mOperations.add(EditOperation.resize(width, height));
+    }
+
+    public void clear() {
+        mOperations.clear();
+    }
+
+    public List<EditOperation> getOperations() {
+        return Collections.unmodifiableList(mOperations);
+    }
+
+    /**
+     * [ 将所有操作融合为一个矩阵和一个输出尺寸 ]
+     * 无论叠加多少步，结果都只有一个矩阵，耗时只与操作数有关，与图像大小无关
+     *
+     * @param sourceWidth  原图宽
+     * @param sourceHeight 原图高
+     * @return 融合结果
+     */
+    public EditResult fuse(int sourceWidth, int sourceHeight) {
+        Matrix matrix = new Matrix();
+        float width = sourceWidth;
+        float height = sourceHeight;
+        for (EditOperation operation : mOperations) {
+            switch (operation.type) {
+                case EditOperation.CROP:
+                    RectF rect = new RectF(operation.rect);
+                    if (!rect.intersect(0, 0, width, height)) {
+                        continue;
+                    }
+                    matrix.postTranslate(-rect.left, -rect.top);
+                    width = rect.width();
+                    height = rect.height();
+                    break;
+                case EditOperation.ROTATE:
+                    for (int i = 0; i < (int) operation.value; i++) {
+                        // (x, y) -> (height - y, x)
+                        matrix.postRotate(90);
+                        matrix.postTranslate(height, 0);
+                        float temp = width;
+                        width = height;
+                        height = temp;
+                    }
+                    break;
+                case EditOperation.FLIP_HORIZONTAL:
+                    matrix.postScale(-1, 1);
+                    matrix.postTranslate(width, 0);
+                    break;
+                case EditOperation.FLIP_VERTICAL:
+                    matrix.postScale(1, -1);
+                    matrix.postTranslate(0, height);
+                    break;
+                case EditOperation.STRAIGHTEN:
+                    float scale = getStraightenScale(operation.value, width, height);
+                    matrix.postRotate(operation.value, width / 2, height / 2);
+                    matrix.postScale(scale, scale, width / 2, height / 2);
+                    break;
+                case EditOperation.RESIZE:
+                    matrix.postScale(operation.rect.width() / width, operation.rect.height() / height);
+                    width = operation.rect.width();
+                    height = operation.rect.height();
+                    break;
+            }
+        }
+        return new EditResult(matrix, width, height);
+    }
+
+    /**
+     * [ 计算微调角度后填满画面所需的放大倍数 ]
+     * 画面矩形反向旋转后的外接矩形必须落在放大后的图像内
+     *
+     * @param degrees 角度
+     * @param width   画面宽
+     * @param height  画面高
+     * @return >=1
+     */
+    private static float getStraightenScale(float degrees, float width, float height) {
+        double radians = Math.toRadians(Math.abs(degrees));
+        double cos = Math.abs(Math.cos(radians));
+        double sin = Math.abs(Math.sin(radians));
+        double scaleX = (width * cos + height * sin) / width;
+        double scaleY = (width * sin + height * cos) / height;
+        return (float) Math.max(scaleX, scaleY);
+    }
+
+    private void flip(int type) {
+        EditOperation last = getLast();
+        if (last != null && last.type == type) {
+            mOperations.remove(mOperations.size() - 1);
+        } else {
+            mOperations.add(type == EditOperation.FLIP_HORIZONTAL
+                    ? EditOperation.flipHorizontal() : EditOperation.flipVertical());
+        }
+    }
+
+    private EditOperation getLast() {
+        return mOperations.isEmpty() ? null : mOperations.get(mOperations.size() - 1);
+    }
+}
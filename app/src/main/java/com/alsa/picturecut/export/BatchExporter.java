@@ -0,0 +1,255 @@
+package com.alsa.picturecut.export;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import com.alsa.picturecut.decode.Decoders;
+import com.alsa.picturecut.decode.RegionDecoder;
+import com.alsa.picturecut.edit.EditResult;
+import com.alsa.picturecut.metrics.CropMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchExporter [ 一次解码，并行导出同一张图的多个剪裁和尺寸 ]
+ * 所有输出依赖的原图区域合并为一个外接矩形，按其中最精细的采样率只解码一次；
+ * 需要更粗采样的输出从逐级减半的图像重采样，避免从大图直接缩小产生锯齿。
+ * 各输出的重采样和编码在ForkJoinPool中并行，总耗时约为一次解码加最慢的一个输出
+ */
+public class BatchExporter {
+    /**
+     * 重采样和编码的线程池
+     */
+    private static final ForkJoinPool sExportPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * [ 按多个输出导出同一张原图，阻塞到全部完成，需在工作线程调用 ]
+     *
+     * @param context context
+     * @param source  原图的URI
+     * @param specs   各输出的剪裁、尺寸、编码格式及输出流
+     * @throws IOException 解码失败或任一输出编码、写入失败
+     */
+    public static void export(Context context, Uri source, List<ExportSpec> specs) throws IOException {
+        try (RegionDecoder decoder = Decoders.open(context, source)) {
+            export(decoder, specs, context.getCacheDir());
+        }
+    }
+
+    /**
+     * [ 用已打开的解码器导出多个输出 ]
+     * 剪裁区域相距很远时外接矩形会远大于各区域之和，此时应分别调用{@link CropExporter#export}
+     *
+     * @param decoder    解码器
+     * @param specs      各输出的剪裁、尺寸、编码格式及输出流
+     * @param scratchDir 区域过大时存放内存映射临时文件的目录
+     * @throws IOException 解码失败或任一输出编码、写入失败
+     */
+    public static void export(RegionDecoder decoder, List<ExportSpec> specs, File scratchDir) throws IOException {
+        if (specs.isEmpty()) {
+            throw new IllegalArgumentException("no outputs");
+        }
+        CropMetrics metrics = CropMetrics.get();
+        long exportStart = metrics == null ? 0 : metrics.begin(CropMetrics.EXPORT);
+        OutputTask[] tasks = new OutputTask[specs.size()];
+        try {
+            List<EditResult> edits = new ArrayList<>(specs.size());
+            for (ExportSpec spec : specs) {
+                edits.add(spec.getEdit());
+            }
+            ExportPlan plan = ExportPlan.create(edits, decoder.getWidth(), decoder.getHeight(),
+                    CropExporter.getScratchLimit());
+            Level[] levels = decodeLevels(decoder, plan, scratchDir);
+            try {
+                for (int i = 0; i < tasks.length; i++) {
+                    tasks[i] = new OutputTask(specs.get(i), levels[plan.getLevel(i)], plan.getRegion());
+                    sExportPool.execute(tasks[i]);
+                }
+            } finally {
+                // 所有任务结束后才能回收共享的图像
+                for (OutputTask task : tasks) {
+                    if (task != null) {
+                        task.quietlyJoin();
+                    }
+                }
+                recycle(levels);
+            }
+            for (OutputTask task : tasks) {
+                // 任务中的运行时异常由join抛出
+                task.join();
+                if (task.mError != null) {
+                    throw task.mError;
+                }
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.end(CropMetrics.EXPORT, exportStart);
+            }
+        }
+        if (metrics != null) {
+            for (OutputTask task : tasks) {
+                metrics.record(CropMetrics.EXPORT_BYTES, task.mBytes);
+            }
+            metrics.notifyExported();
+        }
+    }
+
+    /**
+     * [ 按计划解码共享区域并生成逐级减半的图像 ]
+     * 共享区域过大时解码到内存映射的图像，第一个放得进内存的级别由映射按块平均生成，
+     * 更小的级别再由上一级减半；放不进内存的级别直接使用映射
+     *
+     * @param decoder    解码器
+     * @param plan       解码计划
+     * @param scratchDir 临时文件目录
+     * @return 各级图像，共用的级别为同一个对象
+     * @throws IOException 解码或映射失败
+     */
+    private static Level[] decodeLevels(RegionDecoder decoder, ExportPlan plan, File scratchDir) throws IOException {
+        Level[] levels = new Level[plan.getLevelCount()];
+        boolean complete = false;
+        try {
+            if (plan.isMapped(0)) {
+                MappedImage image = MappedImage.create(scratchDir, plan.getWidth(0), plan.getHeight(0));
+                levels[0] = new Level(null, image);
+                CropExporter.decodeStrips(decoder, plan.getRegion(), plan.getSampleSize(), image);
+            } else {
+                levels[0] = new Level(decoder.decodeRegion(plan.getRegion(), plan.getSampleSize()), null);
+            }
+            for (int i = 1; i < levels.length; i++) {
+                Level previous = levels[i - 1];
+                if (plan.isShared(i)) {
+                    levels[i] = previous;
+                } else if (previous.mBitmap != null) {
+                    // 与映射路径同样向上取整，各级的采样网格一致；恰好缩小一半时双线性插值等于2×2块平均
+                    levels[i] = new Level(Bitmap.createScaledBitmap(previous.mBitmap,
+                            plan.getWidth(i), plan.getHeight(i), true), null);
+                } else {
+                    // 映射的级别都共用第0级的映射
+                    levels[i] = new Level(reduce(previous.mImage, 1 << i), null);
+                }
+            }
+            complete = true;
+            return levels;
+        } finally {
+            if (!complete) {
+                recycle(levels);
+            }
+        }
+    }
+
+    /**
+     * [ 按块平均缩小映射图像 ]
+     *
+     * @param image  映射图像
+     * @param factor 缩小倍数
+     * @return 缩小后的图像
+     */
+    private static Bitmap reduce(MappedImage image, int factor) {
+        int width = CropExporter.ceilDiv(image.getWidth(), factor);
+        int height = CropExporter.ceilDiv(image.getHeight(), factor);
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.reduceRow(factor, y, row);
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 回收各级图像，相邻级别共用的对象只回收一次
+     */
+    private static void recycle(Level[] levels) {
+        for (int i = 0; i < levels.length; i++) {
+            Level level = levels[i];
+            if (level == null || (i > 0 && level == levels[i - 1])) {
+                continue;
+            }
+            if (level.mBitmap != null) {
+                // createScaledBitmap尺寸不变时返回原图像
+                if (i == 0 || level.mBitmap != levels[i - 1].mBitmap) {
+                    level.mBitmap.recycle();
+                }
+            } else {
+                level.mImage.close();
+            }
+        }
+    }
+
+    /**
+     * 共享解码的一个级别，内存中的图像或内存映射的图像，只读
+     */
+    private static class Level {
+        private final Bitmap mBitmap;
+        private final MappedImage mImage;
+
+        Level(Bitmap bitmap, MappedImage image) {
+            mBitmap = bitmap;
+            mImage = image;
+        }
+
+        /**
+         * [ 重采样到一个输出，可在多个线程中同时调用 ]
+         *
+         * @param region 共享的解码区域，原图像素坐标
+         * @param edit   输出的编辑结果
+         * @return 输出图像
+         * @throws IOException 矩阵不可逆
+         */
+        Bitmap render(Rect region, EditResult edit) throws IOException {
+            if (mBitmap != null) {
+                return CropExporter.draw(mBitmap,
+                        CropExporter.getSourceMatrix(region, mBitmap.getWidth(), mBitmap.getHeight(), edit),
+                        edit.getOutputWidth(), edit.getOutputHeight());
+            }
+            return CropExporter.resample(mImage,
+                    CropExporter.getSourceMatrix(region, mImage.getWidth(), mImage.getHeight(), edit),
+                    edit.getOutputWidth(), edit.getOutputHeight());
+        }
+    }
+
+    /**
+     * 一个输出的重采样和编码
+     */
+    private static class OutputTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ExportSpec mSpec;
+        private final Level mLevel;
+        private final Rect mRegion;
+
+        /**
+         * 写入的字节数及IO异常，join之后读取
+         */
+        private long mBytes;
+        private IOException mError;
+
+        OutputTask(ExportSpec spec, Level level, Rect region) {
+            mSpec = spec;
+            mLevel = level;
+            mRegion = region;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                Bitmap output = mLevel.render(mRegion, mSpec.getEdit());
+                try {
+                    mBytes = CropExporter.encode(output, mSpec.getFormat(), mSpec.getQuality(), mSpec.getOut());
+                } finally {
+                    output.recycle();
+                }
+            } catch (IOException e) {
+                mError = e;
+            }
+        }
+    }
+}
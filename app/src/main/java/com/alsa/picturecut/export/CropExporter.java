@@ -0,0 +1,400 @@
+package com.alsa.picturecut.export;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.net.Uri;
+
+import com.alsa.picturecut.decode.Decoders;
+import com.alsa.picturecut.decode.RegionDecoder;
+import com.alsa.picturecut.edit.EditResult;
+import com.alsa.picturecut.metrics.CropMetrics;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * CropExporter [ 将剪裁结果按区域解码并编码输出 ]
+ */
+public class CropExporter {
+    /**
+     * 默认的压缩质量
+     */
+    public static final int DEFAULT_QUALITY = 90;
+
+    /**
+     * 解码区域超过最大内存的1/4且输出不超过时，改为分条解码到内存映射的临时文件
+     */
+    private static final int SCRATCH_MEMORY_FRACTION = 4;
+
+    /**
+     * 分条解码时每条的行数，采样后
+     */
+    private static final int STRIP_ROWS = 256;
+
+    /**
+     * [ 按编辑结果导出图像，编码后直接写入输出流 ]
+     * 只解码编辑结果依赖的原图区域，所有几何变换在一次重采样中完成，不落地临时文件
+     *
+     * @param context context
+     * @param source  原图的URI
+     * @param edit    编辑栈融合后的结果
+     * @param format  编码格式
+     * @param quality 压缩质量 0~100
+     * @param out     输出流，调用方负责关闭
+     * @throws IOException 解码或写入失败
+     */
+    public static void export(Context context, Uri source, EditResult edit, Bitmap.CompressFormat format,
+                              int quality, OutputStream out) throws IOException {
+        CropMetrics metrics = CropMetrics.get();
+        long exportStart = metrics == null ? 0 : metrics.begin(CropMetrics.EXPORT);
+        long bytes;
+        try {
+            Bitmap bitmap = render(context, source, edit);
+            try {
+                bytes = encode(bitmap, format, quality, out);
+            } finally {
+                bitmap.recycle();
+            }
+        } finally {
+            if (metrics != null) {
+                metrics.end(CropMetrics.EXPORT, exportStart);
+            }
+        }
+        if (metrics != null) {
+            metrics.record(CropMetrics.EXPORT_BYTES, bytes);
+            metrics.notifyExported();
+        }
+    }
+
+    /**
+     * [ 编码图像并写入输出流 ]
+     *
+     * @param bitmap  图像
+     * @param format  编码格式
+     * @param quality 压缩质量 0~100
+     * @param out     输出流，调用方负责关闭
+     * @return 写入的字节数
+     * @throws IOException 编码或写入失败
+     */
+    static long encode(Bitmap bitmap, Bitmap.CompressFormat format, int quality, OutputStream out)
+            throws IOException {
+        CropMetrics metrics = CropMetrics.get();
+        CountingOutputStream counter = new CountingOutputStream(out);
+        long encodeStart = metrics == null ? 0 : metrics.begin(CropMetrics.ENCODE);
+        boolean compressed;
+        try {
+            compressed = bitmap.compress(format, quality, counter);
+        } finally {
+            // 编码可能在线程池中执行，异常时也要结束Trace段，否则会留在复用的线程上
+            if (metrics != null) {
+                metrics.end(CropMetrics.ENCODE, encodeStart);
+            }
+        }
+        if (!compressed) {
+            throw new IOException("compress failed: " + format);
+        }
+        counter.flush();
+        return counter.getCount();
+    }
+
+    /**
+     * [ 按编辑结果渲染输出图像 ]
+     * 输出小于原图区域时先由解码器按2的幂采样，再一次重采样到输出尺寸
+     *
+     * @param context context
+     * @param source  原图的URI
+     * @param edit    编辑栈融合后的结果
+     * @return 输出图像
+     * @throws IOException 解码失败
+     */
+    public static Bitmap render(Context context, Uri source, EditResult edit) throws IOException {
+        try (RegionDecoder decoder = Decoders.open(context, source)) {
+            return render(decoder, edit, context.getCacheDir());
+        }
+    }
+
+    /**
+     * [ 用已打开的解码器渲染输出图像 ]
+     *
+     * @param decoder    解码器
+     * @param edit       编辑栈融合后的结果
+     * @param scratchDir 区域过大时存放内存映射临时文件的目录
+     * @return 输出图像
+     * @throws IOException 解码失败
+     */
+    public static Bitmap render(RegionDecoder decoder, EditResult edit, File scratchDir) throws IOException {
+        Rect region = edit.getSourceBounds(decoder.getWidth(), decoder.getHeight());
+        if (region.isEmpty()) {
+            throw new IOException("edit out of bounds");
+        }
+        int sampleSize = getSampleSize(edit.getMaxScale());
+        long regionBytes = 4L * ceilDiv(region.width(), sampleSize) * ceilDiv(region.height(), sampleSize);
+        if (shouldMap(regionBytes, 4L * edit.getOutputWidth() * edit.getOutputHeight(), getScratchLimit())) {
+            return renderMapped(decoder, edit, region, sampleSize, scratchDir);
+        }
+        Bitmap regionBitmap = decoder.decodeRegion(region, sampleSize);
+        try {
+            return draw(regionBitmap, getSourceMatrix(region, regionBitmap.getWidth(), regionBitmap.getHeight(), edit),
+                    edit.getOutputWidth(), edit.getOutputHeight());
+        } finally {
+            regionBitmap.recycle();
+        }
+    }
+
+    /**
+     * [ 是否经内存映射解码 ]
+     * 编码只接受Bitmap，输出图像总要整张分配。输出也超过上限时（如不指定输出尺寸的整图剪裁），
+     * 映射路径仍要分配同样大的输出并在Java中逐像素重采样，因此直接解码，由平台分配图像
+     *
+     * @param regionBytes 采样后解码区域的字节数
+     * @param outputBytes 所有输出图像的字节数
+     * @param limit       上限，见{@link #getScratchLimit()}
+     * @return 区域超过上限且输出不超过上限
+     */
+    static boolean shouldMap(long regionBytes, long outputBytes, long limit) {
+        return regionBytes > limit && outputBytes <= limit;
+    }
+
+    /**
+     * @return 解码图像放入内存的字节数上限，最大内存的1/{@value #SCRATCH_MEMORY_FRACTION}
+     */
+    static long getScratchLimit() {
+        return Runtime.getRuntime().maxMemory() / SCRATCH_MEMORY_FRACTION;
+    }
+
+    /**
+     * [ 计算解码图像到输出的变换矩阵 ]
+     * 解码图像坐标 -> 原图坐标 -> 输出坐标，只有一个矩阵
+     *
+     * @param region 解码区域，原图像素坐标
+     * @param width  解码图像宽，采样后
+     * @param height 解码图像高，采样后
+     * @param edit   编辑栈融合后的结果
+     * @return 矩阵
+     */
+    static Matrix getSourceMatrix(Rect region, int width, int height, EditResult edit) {
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) region.width() / width, (float) region.height() / height);
+        matrix.postTranslate(region.left, region.top);
+        matrix.postConcat(edit.getMatrix());
+        return matrix;
+    }
+
+    /**
+     * [ 把解码图像按矩阵绘制到输出图像 ]
+     * 只读取source，多个线程可以同时从同一个source绘制
+     *
+     * @param source 解码图像
+     * @param matrix 解码图像坐标 -> 输出坐标
+     * @param width  输出宽
+     * @param height 输出高
+     * @return 输出图像
+     */
+    static Bitmap draw(Bitmap source, Matrix matrix, int width, int height) {
+        Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(output);
+        canvas.drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return output;
+    }
+
+    /**
+     * [ 经内存映射的临时文件渲染输出图像 ]
+     * 原图区域分条解码后写入{@link MappedImage}，Java堆中只有一条的像素和输出图像；
+     * 重采样直接从映射中读取。编码只接受Bitmap，输出图像仍在内存中，见{@link #shouldMap}
+     *
+     * @param decoder    解码器
+     * @param edit       编辑栈融合后的结果
+     * @param region     解码区域，原图像素坐标
+     * @param sampleSize 解码采样率
+     * @param scratchDir 临时文件目录
+     * @return 输出图像
+     * @throws IOException 解码或映射失败
+     */
+    public static Bitmap renderMapped(RegionDecoder decoder, EditResult edit, Rect region, int sampleSize,
+                                      File scratchDir) throws IOException {
+        try (MappedImage image = MappedImage.create(scratchDir,
+                ceilDiv(region.width(), sampleSize), ceilDiv(region.height(), sampleSize))) {
+            decodeStrips(decoder, region, sampleSize, image);
+            return resample(image, getSourceMatrix(region, image.getWidth(), image.getHeight(), edit),
+                    edit.getOutputWidth(), edit.getOutputHeight());
+        }
+    }
+
+    /**
+     * [ 按条解码原图区域并写入映射图像 ]
+     *
+     * @param decoder    解码器
+     * @param region     解码区域，原图像素坐标
+     * @param sampleSize 解码采样率
+     * @param image      映射图像，宽高为采样后的区域尺寸
+     * @throws IOException 解码失败
+     */
+    static void decodeStrips(RegionDecoder decoder, Rect region, int sampleSize,
+                             MappedImage image) throws IOException {
+        int width = image.getWidth();
+        int[] pixels = new int[width * STRIP_ROWS];
+        Rect strip = new Rect();
+        for (int y = 0; y < image.getHeight(); y += STRIP_ROWS) {
+            int top = region.top + y * sampleSize;
+            strip.set(region.left, top, region.right, Math.min(region.bottom, top + STRIP_ROWS * sampleSize));
+            int expectedRows = Math.min(STRIP_ROWS, image.getHeight() - y);
+            Bitmap bitmap = decoder.decodeRegion(strip, sampleSize);
+            if (bitmap.getWidth() < width - 1 || bitmap.getHeight() < expectedRows - 1) {
+                // 解码器内存不足时采样更粗，只在条内放大到映射的分辨率
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, expectedRows, true);
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+            try {
+                // 采样后的尺寸可能与计算值相差一个像素，以映射图像为准
+                int stripWidth = Math.min(width, bitmap.getWidth());
+                int rows = Math.min(bitmap.getHeight(), expectedRows);
+                bitmap.getPixels(pixels, 0, width, 0, 0, stripWidth, rows);
+                if (stripWidth < width) {
+                    // 条比映射窄时缓冲区右侧还是上一条的像素，用每行的最后一个像素填充
+                    for (int row = 0; row < rows; row++) {
+                        int offset = row * width;
+                        Arrays.fill(pixels, offset + stripWidth, offset + width, pixels[offset + stripWidth - 1]);
+                    }
+                }
+                // 条比映射少一行时复制最后一行，避免映射底部留下透明的行
+                for (int row = rows; row < expectedRows; row++) {
+                    System.arraycopy(pixels, (rows - 1) * width, pixels, row * width, width);
+                }
+                image.setRows(y, pixels, expectedRows);
+            } finally {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * [ 从映射图像一次双线性重采样到输出图像 ]
+     * 只读取映射，多个线程可以同时从同一个映射图像重采样
+     *
+     * @param image  映射图像
+     * @param matrix 映射图像坐标 -> 输出坐标
+     * @param width  输出宽
+     * @param height 输出高
+     * @return 输出图像
+     * @throws IOException 矩阵不可逆
+     */
+    static Bitmap resample(MappedImage image, Matrix matrix, int width, int height) throws IOException {
+        Matrix inverse = new Matrix();
+        if (!matrix.invert(inverse)) {
+            throw new IOException("singular edit matrix");
+        }
+        float[] values = new float[9];
+        inverse.getValues(values);
+        float scaleX = values[Matrix.MSCALE_X];
+        float skewX = values[Matrix.MSKEW_X];
+        float transX = values[Matrix.MTRANS_X];
+        float skewY = values[Matrix.MSKEW_Y];
+        float scaleY = values[Matrix.MSCALE_Y];
+        float transY = values[Matrix.MTRANS_Y];
+        Bitmap output = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            // 以像素中心计算，映射图像中整数坐标为像素中心
+            float outY = y + 0.5f;
+            for (int x = 0; x < width; x++) {
+                float outX = x + 0.5f;
+                float srcX = scaleX * outX + skewX * outY + transX;
+                float srcY = skewY * outX + scaleY * outY + transY;
+                row[x] = image.sample(srcX - 0.5f, srcY - 0.5f);
+            }
+            output.setPixels(row, 0, width, 0, y, width, 1);
+        }
+        return output;
+    }
+
+    static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * [ 根据输出缩放比计算解码采样率 ]
+     * 取2的幂且采样后分辨率不低于输出，避免采样过度后再放大
+     *
+     * @param scale 原图每像素在输出中的边长，见{@link EditResult#getMaxScale()}
+     * @return 采样率，>=1
+     */
+    static int getSampleSize(float scale) {
+        int sampleSize = 1;
+        if (scale <= 0) {
+            return sampleSize;
+        }
+        while (sampleSize * 2 * scale <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * [ 根据编码格式获取MIME类型 ]
+     *
+     * @param format 编码格式
+     * @return MIME类型
+     */
+    public static String getMimeType(Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return "image/png";
+            case WEBP:
+                return "image/webp";
+            default:
+                return "image/jpeg";
+        }
+    }
+
+    /**
+     * [ 根据编码格式获取文件扩展名 ]
+     *
+     * @param format 编码格式
+     * @return 扩展名，不含'.'
+     */
+    public static String getExtension(Bitmap.CompressFormat format) {
+        switch (format) {
+            case PNG:
+                return "png";
+            case WEBP:
+                return "webp";
+            default:
+                return "jpg";
+        }
+    }
+
+    /**
+     * 统计写入字节数的输出流
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long mCount;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            mCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            mCount += len;
+        }
+
+        long getCount() {
+            return mCount;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.alsa.picturecut.export;
+
+import android.graphics.Rect;
+
+import com.alsa.picturecut.edit.EditResult;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * ExportPlan [ 批量导出的解码计划，只做计算，不解码 ]
+ * 所有输出依赖的原图区域合并为外接矩形，按最小的采样率共享解码一次；
+ * 第n级为共享解码缩小2^n倍，宽高逐级减半并向上取整，与{@link MappedImage#reduceRow}的块划分一致
+ */
+final class ExportPlan {
+    /**
+     * 共享的解码区域，原图像素坐标
+     */
+    private final Rect mRegion;
+
+    /**
+     * 共享解码的采样率，各输出中最小的
+     */
+    private final int mSampleSize;
+
+    /**
+     * 各输出使用的级别
+     */
+    private final int[] mOutputLevels;
+
+    /**
+     * 各级的宽高
+     */
+    private final int[] mWidths;
+    private final int[] mHeights;
+
+    /**
+     * 各级是否为内存映射的图像；映射的级别除第0级外都与上一级共用同一个映射
+     */
+    private final boolean[] mMapped;
+
+    private ExportPlan(Rect region, int sampleSize, int[] outputLevels, int[] widths, int[] heights,
+                       boolean[] mapped) {
+        mRegion = region;
+        mSampleSize = sampleSize;
+        mOutputLevels = outputLevels;
+        mWidths = widths;
+        mHeights = heights;
+        mMapped = mapped;
+    }
+
+    /**
+     * [ 计算解码计划 ]
+     *
+     * @param edits        各输出的编辑结果
+     * @param sourceWidth  原图宽
+     * @param sourceHeight 原图高
+     * @param memoryLimit  一级图像放入内存的字节数上限，见{@link CropExporter#getScratchLimit()}
+     * @return 解码计划
+     * @throws IOException 某个输出超出原图范围
+     */
+    static ExportPlan create(List<EditResult> edits, int sourceWidth, int sourceHeight, long memoryLimit)
+            throws IOException {
+        if (edits.isEmpty()) {
+            throw new IllegalArgumentException("no outputs");
+        }
+        Rect region = new Rect();
+        int[] sampleSizes = new int[edits.size()];
+        int minSampleSize = Integer.MAX_VALUE;
+        int maxSampleSize = 1;
+        // 各输出并行渲染，同时存在于内存中
+        long outputBytes = 0;
+        for (int i = 0; i < sampleSizes.length; i++) {
+            EditResult edit = edits.get(i);
+            Rect bounds = edit.getSourceBounds(sourceWidth, sourceHeight);
+            if (bounds.isEmpty()) {
+                throw new IOException("edit out of bounds: output " + i);
+            }
+            region.union(bounds);
+            sampleSizes[i] = CropExporter.getSampleSize(edit.getMaxScale());
+            minSampleSize = Math.min(minSampleSize, sampleSizes[i]);
+            maxSampleSize = Math.max(maxSampleSize, sampleSizes[i]);
+            outputBytes += 4L * edit.getOutputWidth() * edit.getOutputHeight();
+        }
+
+        // 采样率都是2的幂，级别为相对最小采样率的指数
+        int[] outputLevels = new int[sampleSizes.length];
+        for (int i = 0; i < sampleSizes.length; i++) {
+            outputLevels[i] = Integer.numberOfTrailingZeros(sampleSizes[i] / minSampleSize);
+        }
+        int count = Integer.numberOfTrailingZeros(maxSampleSize / minSampleSize) + 1;
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        boolean[] mapped = new boolean[count];
+        widths[0] = CropExporter.ceilDiv(region.width(), minSampleSize);
+        heights[0] = CropExporter.ceilDiv(region.height(), minSampleSize);
+        mapped[0] = CropExporter.shouldMap(4L * widths[0] * heights[0], outputBytes, memoryLimit);
+        for (int i = 1; i < count; i++) {
+            widths[i] = CropExporter.ceilDiv(widths[i - 1], 2);
+            heights[i] = CropExporter.ceilDiv(heights[i - 1], 2);
+            // 放不进内存的级别直接使用上一级的映射
+            mapped[i] = mapped[i - 1] && 4L * widths[i] * heights[i] > memoryLimit;
+        }
+        return new ExportPlan(region, minSampleSize, outputLevels, widths, heights, mapped);
+    }
+
+    Rect getRegion() {
+        return mRegion;
+    }
+
+    int getSampleSize() {
+        return mSampleSize;
+    }
+
+    int getLevelCount() {
+        return mWidths.length;
+    }
+
+    /**
+     * @param output 输出序号
+     * @return 该输出使用的级别
+     */
+    int getLevel(int output) {
+        return mOutputLevels[output];
+    }
+
+    int getWidth(int level) {
+        return mWidths[level];
+    }
+
+    int getHeight(int level) {
+        return mHeights[level];
+    }
+
+    /**
+     * @param level 级别
+     * @return 是否为内存映射的图像
+     */
+    boolean isMapped(int level) {
+        return mMapped[level];
+    }
+
+    /**
+     * @param level 级别
+     * @return 是否与上一级共用同一个图像，共用的图像只回收一次
+     */
+    boolean isShared(int level) {
+        return level > 0 && mMapped[level];
+    }
+}
@@ -0,0 +1,55 @@
+package com.alsa.picturecut.export;
+
+import android.graphics.Bitmap;
+
+import com.alsa.picturecut.edit.EditResult;
+
+import java.io.OutputStream;
+
+/**
+ * ExportSpec [ 批量导出中的一个输出：剪裁和尺寸、编码格式、输出流 ]
+ */
+public class ExportSpec {
+    /**
+     * 编辑栈融合后的结果，包含剪裁、几何变换和输出尺寸
+     */
+    private final EditResult mEdit;
+
+    /**
+     * 编码格式及压缩质量
+     */
+    private final Bitmap.CompressFormat mFormat;
+    private final int mQuality;
+
+    /**
+     * 输出流，调用方负责关闭
+     */
+    private final OutputStream mOut;
+
+    public ExportSpec(EditResult edit, Bitmap.CompressFormat format, OutputStream out) {
+        this(edit, format, CropExporter.DEFAULT_QUALITY, out);
+    }
+
+    public ExportSpec(EditResult edit, Bitmap.CompressFormat format, int quality, OutputStream out) {
+        mEdit = edit;
+        mFormat = format;
+        mQuality = quality;
+        mOut = out;
+    }
+
+    public EditResult getEdit() {
+        return mEdit;
+    }
+
+    public Bitmap.CompressFormat getFormat() {
+        return mFormat;
+    }
+
+    public int getQuality() {
+        return mQuality;
+    }
+
+    public OutputStream getOut() {
+        return mOut;
+    }
+}
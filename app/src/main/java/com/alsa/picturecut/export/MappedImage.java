@@ -0,0 +1,188 @@
+package com.alsa.picturecut.export;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MappedImage [ 映射到临时文件的ARGB图像，像素不占用Java堆 ]
+ * 通过FileChannel.map映射为IntBuffer，页面由系统按需换入换出，可处理超过堆上限的图像；
+ * 临时文件映射后立即删除，进程退出时不会残留；映射要到GC回收后才解除，见{@link #close()}
+ */
+public class MappedImage implements Closeable {
+    /**
+     * 每个像素的字节数
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final int mWidth;
+    private final int mHeight;
+
+    /**
+     * 映射的像素，按行存储的ARGB
+     */
+    private IntBuffer mPixels;
+
+    private MappedImage(int width, int height, IntBuffer pixels) {
+        mWidth = width;
+        mHeight = height;
+        mPixels = pixels;
+    }
+
+    /**
+     * [ 在目录中创建临时文件并映射为图像 ]
+     *
+     * @param dir    临时文件目录
+     * @param width  宽
+     * @param height 高
+     * @return 图像，像素初始为0
+     * @throws IOException 无法创建或映射
+     */
+    public static MappedImage create(File dir, int width, int height) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size <= 0: " + width + "x" + height);
+        }
+        long bytes = (long) width * height * BYTES_PER_PIXEL;
+        if (bytes > Integer.MAX_VALUE) {
+            // 单次映射的上限
+            throw new IOException("image too large to map: " + width + "x" + height);
+        }
+        File file = File.createTempFile("crop", ".argb", dir);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(bytes);
+            // 通道关闭后映射仍然有效
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.order(ByteOrder.nativeOrder());
+            return new MappedImage(width, height, buffer.asIntBuffer());
+        } finally {
+            // 已映射的文件删除后仍可访问，映射释放时系统回收空间
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * [ 写入若干行像素 ]
+     *
+     * @param y      起始行
+     * @param pixels ARGB像素，行宽为{@link #getWidth()}
+     * @param rows   行数
+     */
+    public void setRows(int y, int[] pixels, int rows) {
+        IntBuffer buffer = pixels();
+        buffer.position(y * mWidth);
+        buffer.put(pixels, 0, rows * mWidth);
+    }
+
+    /**
+     * [ 读取一个像素 ]
+     *
+     * @param x x
+     * @param y y
+     * @return ARGB
+     */
+    public int getPixel(int x, int y) {
+        return pixels().get(y * mWidth + x);
+    }
+
+    /**
+     * [ 双线性采样，超出范围时取边缘像素 ]
+     *
+     * @param x x，整数为像素中心
+     * @param y y，整数为像素中心
+     * @return ARGB
+     */
+    public int sample(float x, float y) {
+        IntBuffer pixels = pixels();
+        x = Math.max(0, Math.min(x, mWidth - 1));
+        y = Math.max(0, Math.min(y, mHeight - 1));
+        int x0 = (int) x;
+        int y0 = (int) y;
+        int x1 = Math.min(x0 + 1, mWidth - 1);
+        int y1 = Math.min(y0 + 1, mHeight - 1);
+        float fx = x - x0;
+        float fy = y - y0;
+        int row0 = y0 * mWidth;
+        int row1 = y1 * mWidth;
+        return blend(pixels.get(row0 + x0), pixels.get(row0 + x1), pixels.get(row1 + x0), pixels.get(row1 + x1), fx, fy);
+    }
+
+    /**
+     * [ 按factor×factor的块取平均，计算缩小后的一行 ]
+     * 边缘不足一块时只平均图像内的像素
+     *
+     * @param factor 缩小倍数
+     * @param y      缩小后的行
+     * @param out    输出的ARGB像素，长度不小于宽度/factor向上取整
+     */
+    public void reduceRow(int factor, int y, int[] out) {
+        IntBuffer pixels = pixels();
+        int top = y * factor;
+        int bottom = Math.min(top + factor, mHeight);
+        int width = (mWidth + factor - 1) / factor;
+        for (int x = 0; x < width; x++) {
+            int left = x * factor;
+            int right = Math.min(left + factor, mWidth);
+            int a = 0;
+            int r = 0;
+            int g = 0;
+            int b = 0;
+            for (int row = top; row < bottom; row++) {
+                int offset = row * mWidth;
+                for (int column = left; column < right; column++) {
+                    int pixel = pixels.get(offset + column);
+                    a += pixel >>> 24;
+                    r += (pixel >> 16) & 0xff;
+                    g += (pixel >> 8) & 0xff;
+                    b += pixel & 0xff;
+                }
+            }
+            int count = (bottom - top) * (right - left);
+            int half = count / 2;
+            out[x] = (a + half) / count << 24 | (r + half) / count << 16 | (g + half) / count << 8 | (b + half) / count;
+        }
+    }
+
+    /**
+     * 释放映射的引用，之后不能再读写。Java没有公开的解除映射的接口，映射及已删除的临时文件
+     * 占用的磁盘空间要到MappedByteBuffer被GC回收时才释放；连续导出多张大图时可能同时存在多个映射
+     */
+    @Override
+    public void close() {
+        mPixels = null;
+    }
+
+    private IntBuffer pixels() {
+        if (mPixels == null) {
+            throw new IllegalStateException("closed");
+        }
+        return mPixels;
+    }
+
+    /**
+     * 按通道双线性插值
+     */
+    private static int blend(int p00, int p10, int p01, int p11, float fx, float fy) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            float top = ((p00 >>> shift) & 0xff) * (1 - fx) + ((p10 >>> shift) & 0xff) * fx;
+            float bottom = ((p01 >>> shift) & 0xff) * (1 - fx) + ((p11 >>> shift) & 0xff) * fx;
+            result |= Math.round(top + (bottom - top) * fy) << shift;
+        }
+        return result;
+    }
+}
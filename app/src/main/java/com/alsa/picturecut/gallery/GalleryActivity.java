@@ -0,0 +1,125 @@
+package com.alsa.picturecut.gallery;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.alsa.picturecut.EditActivity;
+import com.alsa.picturecut.R;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+import butterknife.Unbinder;
+
+/**
+ * GalleryActivity [ 应用内相册，分页加载并按滑动方向预取缩略图 ]
+ * 选中后直接把图片URI交给编辑页面，不再经过系统相册和路径查询
+ */
+public class GalleryActivity extends AppCompatActivity {
+    /**
+     * 列数
+     */
+    private static final int SPAN_COUNT = 4;
+
+    /**
+     * 沿滑动方向预取的行数
+     */
+    private static final int PREFETCH_ROWS = 2;
+
+    /**
+     * 距离末尾不足该行数时加载下一页
+     */
+    private static final int LOAD_MORE_ROWS = 4;
+
+    @BindView(R.id.recycler_view)
+    RecyclerView recyclerView;
+
+    /**
+     * ButterKnife绑定对象
+     */
+    private Unbinder unbinder;
+
+    private MediaStorePager mPager;
+    private ThumbnailCache mThumbnailCache;
+    private GalleryAdapter mAdapter;
+    private GridLayoutManager mLayoutManager;
+
+    /**
+     * 分页加载回调
+     */
+    private final MediaStorePager.Callback mPageCallback = (ids, hasMore) -> mAdapter.append(ids);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_gallery);
+        unbinder = ButterKnife.bind(this);
+
+        int cellSize = getResources().getDisplayMetrics().widthPixels / SPAN_COUNT;
+        mPager = new MediaStorePager(getContentResolver());
+        mThumbnailCache = new ThumbnailCache(this, cellSize);
+        mAdapter = new GalleryAdapter(mThumbnailCache, cellSize, this::openEdit);
+        mLayoutManager = new GridLayoutManager(this, SPAN_COUNT);
+        recyclerView.setLayoutManager(mLayoutManager);
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setAdapter(mAdapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                onGridScrolled(dy);
+            }
+        });
+        mPager.loadNextPage(mPageCallback);
+    }
+
+    @Override
+    protected void onDestroy() {
+        mPager.release();
+        mThumbnailCache.release();
+        unbinder.unbind();
+        super.onDestroy();
+    }
+
+    /**
+     * [ 沿滑动方向预取即将显示的缩略图，接近末尾时加载下一页 ]
+     *
+     * @param dy 垂直滑动距离，大于0为向下
+     */
+    private void onGridScrolled(int dy) {
+        int first = mLayoutManager.findFirstVisibleItemPosition();
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int count = mAdapter.getItemCount();
+        int prefetch = PREFETCH_ROWS * SPAN_COUNT;
+        if (dy > 0) {
+            for (int i = last + 1, end = Math.min(count, last + 1 + prefetch); i < end; i++) {
+                mThumbnailCache.prefetch(mAdapter.getId(i));
+            }
+        } else if (dy < 0) {
+            for (int i = first - 1, end = Math.max(0, first - prefetch); i >= end; i--) {
+                mThumbnailCache.prefetch(mAdapter.getId(i));
+            }
+        }
+        if (count - last <= LOAD_MORE_ROWS * SPAN_COUNT) {
+            mPager.loadNextPage(mPageCallback);
+        }
+    }
+
+    /**
+     * [ 打开编辑页面 ]
+     *
+     * @param uri 图片URI
+     */
+    private void openEdit(Uri uri) {
+        Intent intent = new Intent(this, EditActivity.class);
+        intent.putExtra(EditActivity.EXTRA_URI, uri);
+        startActivity(intent);
+    }
+}
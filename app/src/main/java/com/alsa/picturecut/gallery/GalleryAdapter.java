@@ -0,0 +1,117 @@
+package com.alsa.picturecut.gallery;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * GalleryAdapter [ 相册网格的适配器，只持有图片_ID ]
+ */
+public class GalleryAdapter extends RecyclerView.Adapter<GalleryAdapter.ViewHolder> {
+    private final ThumbnailCache mThumbnailCache;
+
+    /**
+     * 单元格边长
+     */
+    private final int mCellSize;
+
+    private final OnPhotoClickListener mListener;
+
+    /**
+     * 已加载的图片_ID
+     */
+    private long[] mIds = new long[MediaStorePager.PAGE_SIZE];
+    private int mCount;
+
+    public GalleryAdapter(ThumbnailCache thumbnailCache, int cellSize, OnPhotoClickListener listener) {
+        mThumbnailCache = thumbnailCache;
+        mCellSize = cellSize;
+        mListener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * [ 追加一页图片 ]
+     *
+     * @param ids 图片_ID
+     */
+    public void append(long[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        if (mCount + ids.length > mIds.length) {
+            mIds = Arrays.copyOf(mIds, Math.max(mIds.length * 2, mCount + ids.length));
+        }
+        System.arraycopy(ids, 0, mIds, mCount, ids.length);
+        int start = mCount;
+        mCount += ids.length;
+        notifyItemRangeInserted(start, ids.length);
+    }
+
+    /**
+     * [ 获取指定位置的图片_ID ]
+     *
+     * @param position 位置
+     * @return 图片_ID
+     */
+    public long getId(int position) {
+        return mIds[position];
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mIds[position];
+    }
+
+    @Override
+    public int getItemCount() {
+        return mCount;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ImageView imageView = new ImageView(parent.getContext());
+        imageView.setLayoutParams(new RecyclerView.LayoutParams(mCellSize, mCellSize));
+        imageView.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        return new ViewHolder(imageView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull final ViewHolder holder, int position) {
+        final long id = mIds[position];
+        mThumbnailCache.bind(holder.imageView, id);
+        holder.imageView.setOnClickListener(v -> mListener.onPhotoClick(
+                ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id)));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        // 滑出屏幕的单元格取消未完成的加载
+        mThumbnailCache.unbind(holder.imageView);
+        holder.imageView.setImageBitmap(null);
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final ImageView imageView;
+
+        ViewHolder(ImageView imageView) {
+            super(imageView);
+            this.imageView = imageView;
+        }
+    }
+
+    /**
+     * 点击图片的监听
+     */
+    public interface OnPhotoClickListener {
+        void onPhotoClick(Uri uri);
+    }
+}
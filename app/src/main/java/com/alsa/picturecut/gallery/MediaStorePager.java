@@ -0,0 +1,142 @@
+package com.alsa.picturecut.gallery;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MediaStorePager [ 在后台线程分页查询相册图片 ]
+ * 只查询_ID一列，按_ID倒序以“小于上一页最后一个_ID”分页，不使用OFFSET，翻页开销与页码无关
+ */
+public class MediaStorePager {
+    /**
+     * 每页的图片数
+     */
+    public static final int PAGE_SIZE = 120;
+
+    /**
+     * 只查询需要的列
+     */
+    private static final String[] PROJECTION = new String[]{MediaStore.Images.Media._ID};
+
+    private static final String SORT_ORDER = MediaStore.Images.Media._ID + " DESC";
+
+    private final ContentResolver mResolver;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * 上一页最后一个图片的_ID
+     */
+    private long mLastId = Long.MAX_VALUE;
+
+    /**
+     * 是否正在加载、是否还有下一页，只在主线程读写
+     */
+    private boolean mLoading;
+    private boolean mHasMore = true;
+
+    public MediaStorePager(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * [ 加载下一页，在主线程调用，正在加载或没有更多时忽略 ]
+     *
+     * @param callback 在主线程回调
+     */
+    public void loadNextPage(final Callback callback) {
+        if (mLoading || !mHasMore) {
+            return;
+        }
+        mLoading = true;
+        final long beforeId = mLastId;
+        mExecutor.execute(() -> {
+            final long[] ids = queryPage(mResolver, beforeId, PAGE_SIZE);
+            mMainHandler.post(() -> {
+                mLoading = false;
+                mHasMore = ids.length == PAGE_SIZE;
+                if (ids.length > 0) {
+                    mLastId = ids[ids.length - 1];
+                }
+                callback.onPageLoaded(ids, mHasMore);
+            });
+        });
+    }
+
+    public boolean hasMore() {
+        return mHasMore;
+    }
+
+    /**
+     * 停止后台查询
+     */
+    public void release() {
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * [ 查询_ID小于beforeId的一页图片 ]
+     *
+     * @param resolver ContentResolver
+     * @param beforeId 上一页最后一个_ID
+     * @param limit    每页数量
+     * @return 图片_ID，按倒序排列
+     */
+    @WorkerThread
+    static long[] queryPage(ContentResolver resolver, long beforeId, int limit) {
+        String selection = MediaStore.Images.Media._ID + " < ?";
+        String[] selectionArgs = new String[]{String.valueOf(beforeId)};
+        Cursor cursor;
+        if (Build.VERSION.SDK_INT > Build.VERSION_CODES.Q) {
+            // Q之后（API 30起）MediaStore才遵守QUERY_ARG_LIMIT，且不再接受排序中的LIMIT
+            Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, SORT_ORDER);
+            args.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            cursor = resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, PROJECTION, args, null);
+        } else {
+            // 之前的系统忽略QUERY_ARG_LIMIT，LIMIT写在排序后面，每页只查询limit行
+            cursor = resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, PROJECTION, selection,
+                    selectionArgs, SORT_ORDER + " LIMIT " + limit);
+        }
+        if (cursor == null) {
+            return new long[0];
+        }
+        try {
+            int count = Math.min(cursor.getCount(), limit);
+            long[] ids = new long[count];
+            int columnIndex = cursor.getColumnIndexOrThrow(PROJECTION[0]);
+            for (int i = 0; i < count && cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(columnIndex);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 分页加载回调
+     */
+    public interface Callback {
+        /**
+         * @param ids     本页图片的_ID
+         * @param hasMore 是否还有下一页
+         */
+        void onPageLoaded(long[] ids, boolean hasMore);
+    }
+}
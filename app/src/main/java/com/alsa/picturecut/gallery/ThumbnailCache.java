@@ -0,0 +1,193 @@
+package com.alsa.picturecut.gallery;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.LruCache;
+import android.util.Size;
+import android.widget.ImageView;
+
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ThumbnailCache [ 按单元格尺寸加载缩略图，并缓存在有上限的内存中 ]
+ * API 29使用ContentResolver.loadThumbnail，低版本使用MediaStore的MINI缩略图；
+ * 除ImageView绑定外还支持预取，已在加载中的图片不会重复请求
+ * 除加载线程外，所有方法都在主线程调用
+ */
+public class ThumbnailCache {
+    /**
+     * 加载线程数
+     */
+    private static final int LOADER_THREADS = 2;
+
+    /**
+     * 缓存上限占最大内存的比例
+     */
+    private static final int MEMORY_FRACTION = 8;
+
+    private final ContentResolver mResolver;
+
+    /**
+     * 缩略图边长
+     */
+    private final int mSize;
+
+    /**
+     * 以字节为单位的LRU缓存
+     */
+    private final LruCache<Long, Bitmap> mCache;
+
+    /**
+     * 加载中的请求，可以取消
+     */
+    private final Map<Long, CancellationSignal> mPending = new HashMap<>();
+
+    /**
+     * 等待加载结果的ImageView
+     */
+    private final Map<Long, ImageView> mTargets = new HashMap<>();
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(LOADER_THREADS);
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public ThumbnailCache(Context context, int size) {
+        mResolver = context.getContentResolver();
+        mSize = size;
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+        mCache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * [ 将图片的缩略图显示到ImageView，未缓存时异步加载 ]
+     *
+     * @param view ImageView，会使用其tag记录当前图片
+     * @param id   图片_ID
+     */
+    public void bind(ImageView view, long id) {
+        Object previous = view.getTag();
+        if (previous instanceof Long && mTargets.get(previous) == view) {
+            mTargets.remove(previous);
+        }
+        view.setTag(id);
+        Bitmap bitmap = mCache.get(id);
+        if (bitmap != null) {
+            view.setImageBitmap(bitmap);
+            return;
+        }
+        view.setImageBitmap(null);
+        mTargets.put(id, view);
+        request(id);
+    }
+
+    /**
+     * [ 预取缩略图，已缓存或加载中时忽略 ]
+     *
+     * @param id 图片_ID
+     */
+    public void prefetch(long id) {
+        if (mCache.get(id) == null) {
+            request(id);
+        }
+    }
+
+    /**
+     * [ ImageView不再显示该图片时取消加载 ]
+     *
+     * @param view ImageView
+     */
+    public void unbind(ImageView view) {
+        Object tag = view.getTag();
+        if (!(tag instanceof Long)) {
+            return;
+        }
+        if (mTargets.get(tag) == view) {
+            mTargets.remove(tag);
+            CancellationSignal signal = mPending.remove(tag);
+            if (signal != null) {
+                signal.cancel();
+            }
+        }
+        view.setTag(null);
+    }
+
+    /**
+     * 取消所有加载并清空缓存
+     */
+    public void release() {
+        for (CancellationSignal signal : mPending.values()) {
+            signal.cancel();
+        }
+        mPending.clear();
+        mTargets.clear();
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+        mCache.evictAll();
+    }
+
+    private void request(final long id) {
+        if (mPending.containsKey(id)) {
+            return;
+        }
+        final CancellationSignal signal = new CancellationSignal();
+        mPending.put(id, signal);
+        mExecutor.execute(() -> {
+            final Bitmap bitmap = signal.isCanceled() ? null : loadThumbnail(id, signal);
+            mMainHandler.post(() -> onLoaded(id, signal, bitmap));
+        });
+    }
+
+    private void onLoaded(long id, CancellationSignal signal, Bitmap bitmap) {
+        if (mPending.get(id) == signal) {
+            mPending.remove(id);
+        }
+        if (bitmap == null) {
+            return;
+        }
+        mCache.put(id, bitmap);
+        ImageView view = mTargets.remove(id);
+        if (view != null && Long.valueOf(id).equals(view.getTag())) {
+            view.setImageBitmap(bitmap);
+        }
+    }
+
+    /**
+     * [ 按单元格尺寸加载缩略图 ]
+     *
+     * @param id     图片_ID
+     * @param signal 取消信号
+     * @return 缩略图|null
+     */
+    @WorkerThread
+    private Bitmap loadThumbnail(long id, CancellationSignal signal) {
+        Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            try {
+                return mResolver.loadThumbnail(uri, new Size(mSize, mSize), signal);
+            } catch (IOException | RuntimeException e) {
+                // 取消时抛出OperationCanceledException
+                return null;
+            }
+        }
+        return MediaStore.Images.Thumbnails.getThumbnail(mResolver, id, MediaStore.Images.Thumbnails.MINI_KIND, null);
+    }
+}
@@ -0,0 +1,179 @@
+package com.alsa.picturecut.metrics;
+
+import android.os.Trace;
+
+/**
+ * CropMetrics [ 剪裁各阶段的耗时统计，默认关闭 ]
+ * 调用{@link #enable()}后，解码、绘制、触摸到绘制的延迟、导出、编码耗时及导出字节数
+ * 会记录到各自的直方图中，并用{@link Trace}标记，可在systrace/Perfetto中查看
+ */
+public class CropMetrics {
+    /**
+     * 统计阶段，耗时单位为纳秒
+     */
+    public static final int DECODE = 0;
+    /**
+     * 绘制一帧，包括按矩阵缩放绘制图像
+     */
+    public static final int DRAW = 1;
+    public static final int TOUCH_TO_DRAW = 2;
+    public static final int EXPORT = 3;
+    public static final int ENCODE = 4;
+    /**
+     * 导出的字节数
+     */
+    public static final int EXPORT_BYTES = 5;
+
+    private static final String[] STAGE_NAMES = {
+            "PictureCut.decode",
+            "PictureCut.draw",
+            "PictureCut.touchToDraw",
+            "PictureCut.export",
+            "PictureCut.encode",
+            "PictureCut.exportBytes"
+    };
+
+    /**
+     * 阶段数
+     */
+    public static final int STAGE_COUNT = STAGE_NAMES.length;
+
+    /**
+     * 全局实例，为null时不统计
+     */
+    private static volatile CropMetrics sInstance;
+
+    /**
+     * 各阶段的直方图
+     */
+    private final Histogram[] mHistograms = new Histogram[STAGE_COUNT];
+
+    /**
+     * 导出完成的监听
+     */
+    private volatile Listener mListener;
+
+    private CropMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mHistograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * 开启统计
+     *
+     * @return 全局实例
+     */
+    public static synchronized CropMetrics enable() {
+        if (sInstance == null) {
+            sInstance = new CropMetrics();
+        }
+        return sInstance;
+    }
+
+    /**
+     * 关闭统计，已记录的数据一并丢弃
+     */
+    public static synchronized void disable() {
+        sInstance = null;
+    }
+
+    /**
+     * 获取全局实例
+     *
+     * @return 未开启统计时为null
+     */
+    public static CropMetrics get() {
+        return sInstance;
+    }
+
+    /**
+     * 获取阶段名称，与Trace中的section名称相同
+     *
+     * @param stage 阶段
+     * @return 名称
+     */
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     * [ 开始一个阶段，与{@link #end(int, long)}在同一线程成对调用 ]
+     *
+     * @param stage 阶段
+     * @return 开始时间，纳秒
+     */
+    public long begin(int stage) {
+        Trace.beginSection(STAGE_NAMES[stage]);
+        return System.nanoTime();
+    }
+
+    /**
+     * [ 结束一个阶段并记录耗时 ]
+     *
+     * @param stage     阶段
+     * @param startNano {@link #begin(int)}的返回值
+     */
+    public void end(int stage, long startNano) {
+        mHistograms[stage].record(System.nanoTime() - startNano);
+        Trace.endSection();
+    }
+
+    /**
+     * [ 直接记录一个值 ]
+     *
+     * @param stage 阶段
+     * @param value 耗时纳秒或字节数
+     */
+    public void record(int stage, long value) {
+        mHistograms[stage].record(value);
+    }
+
+    /**
+     * 设置导出完成的监听，回调在导出线程中执行
+     *
+     * @param listener 监听|null
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 通知监听一次导出已完成
+     */
+    public void notifyExported() {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onExported(this);
+        }
+    }
+
+    /**
+     * 获取所有阶段的快照
+     *
+     * @return 以阶段为下标的快照
+     */
+    public Histogram.Snapshot[] snapshot() {
+        Histogram.Snapshot[] snapshots = new Histogram.Snapshot[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            snapshots[i] = mHistograms[i].snapshot();
+        }
+        return snapshots;
+    }
+
+    /**
+     * 清空所有阶段的数据
+     */
+    public void reset() {
+        for (Histogram histogram : mHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * 导出完成的监听，可在此上报分位数
+     */
+    public interface Listener {
+        void onExported(CropMetrics metrics);
+    }
+}
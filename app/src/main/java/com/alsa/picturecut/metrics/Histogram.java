@@ -0,0 +1,171 @@
+package com.alsa.picturecut.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram [ 无锁的固定桶直方图 ]
+ * 按2的幂分段，每段再线性分8个桶，相对误差不超过12.5%；
+ * 记录时只做原子自增，不分配对象，可在绘制和触摸的热路径上调用
+ */
+public class Histogram {
+    /**
+     * 每个2的幂分段内的桶数 = 1 << SUB_BUCKET_BITS
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 桶总数，覆盖 0 ~ Long.MAX_VALUE
+     */
+    static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * 各桶的计数
+     */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 总数、总和、最大值
+     */
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * [ 记录一个值 ]
+     *
+     * @param value 非负值，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mBuckets.incrementAndGet(getBucketIndex(value));
+        mCount.incrementAndGet();
+        // 总和溢出时保持为Long.MAX_VALUE
+        long sum = mSum.get();
+        while (!mSum.compareAndSet(sum, sum + value < sum ? Long.MAX_VALUE : sum + value)) {
+            sum = mSum.get();
+        }
+        long max = mMax.get();
+        while (value > max && !mMax.compareAndSet(max, value)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    /**
+     * [ 获取当前数据的快照，用于计算分位数 ]
+     * 记录与快照并发时，快照内各字段可能相差几次记录
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+        return new Snapshot(buckets, mCount.get(), mSum.get(), mMax.get());
+    }
+
+    /**
+     * [ 计算值所在的桶 ]
+     *
+     * @param value 非负值
+     * @return 桶序号
+     */
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    /**
+     * [ 计算桶的下界 ]
+     *
+     * @param index 桶序号
+     * @return 桶内的最小值
+     */
+    static long getBucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            mBuckets = buckets;
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public double getMean() {
+            return mCount == 0 ? 0 : (double) mSum / mCount;
+        }
+
+        /**
+         * [ 计算分位数，返回所在桶的下界，不超过最大值 ]
+         *
+         * @param percentile 0~100
+         * @return 分位值
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long bucket : mBuckets) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+            rank = Math.max(1, rank);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return Math.min(getBucketLowerBound(i), mMax);
+                }
+            }
+            return mMax;
+        }
+    }
+}
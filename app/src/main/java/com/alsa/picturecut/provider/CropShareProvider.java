@@ -0,0 +1,213 @@
+package com.alsa.picturecut.provider;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.alsa.picturecut.BuildConfig;
+import com.alsa.picturecut.edit.EditResult;
+import com.alsa.picturecut.export.CropExporter;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CropShareProvider [ 以管道流的方式对外提供剪裁结果 ]
+ * 接收方读取时才按需编码，数据直接写入管道，不产生临时文件，也不需要存储写权限；
+ * 只读，insert/delete/update不做任何修改，按ContentProvider的约定返回null或0。
+ * 剪裁任务只保存在进程内存中，进程被回收后已授权的URI无法再打开（FileNotFoundException），
+ * 接收方需要在收到分享后尽快读取
+ */
+public class CropShareProvider extends ContentProvider {
+    private static final String TAG = "CropShareProvider";
+
+    /**
+     * Provider的authority，与AndroidManifest中保持一致
+     */
+    public static final String AUTHORITY = BuildConfig.APPLICATION_ID + ".crop";
+
+    /**
+     * URI路径前缀
+     */
+    private static final String PATH_CROP = "crop";
+
+    /**
+     * 最多保留的剪裁任务数，超出后淘汰最早的任务
+     */
+    private static final int MAX_JOBS = 16;
+
+    /**
+     * 已发布的剪裁任务，key为任务id
+     */
+    private static final Map<Long, CropJob> sJobs = new LinkedHashMap<Long, CropJob>(MAX_JOBS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CropJob> eldest) {
+            return size() > MAX_JOBS;
+        }
+    };
+
+    /**
+     * 任务id生成器
+     */
+    private static final AtomicLong sNextId = new AtomicLong();
+
+    /**
+     * 向管道写入数据的线程池
+     */
+    private static final ExecutorService sWriter = Executors.newCachedThreadPool();
+
+    /**
+     * [ 发布一个剪裁任务，返回可分享的URI ]
+     *
+     * @param source 原图的URI
+     * @param edit   编辑栈融合后的结果
+     * @param format 编码格式
+     * @return content://{AUTHORITY}/crop/{id}.{ext}
+     */
+    public static Uri publish(Uri source, EditResult edit, Bitmap.CompressFormat format) {
+        long id = sNextId.incrementAndGet();
+        synchronized (sJobs) {
+            sJobs.put(id, new CropJob(source, edit, format));
+        }
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath(PATH_CROP)
+                .appendPath(id + "." + CropExporter.getExtension(format))
+                .build();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        if (findJob(uri) == null) {
+            return null;
+        }
+        if (projection == null) {
+            projection = new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        }
+        // 数据是边读边编码的，大小未知，SIZE返回null
+        MatrixCursor cursor = new MatrixCursor(projection, 1);
+        Object[] row = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(projection[i])) {
+                row[i] = uri.getLastPathSegment();
+            }
+        }
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        CropJob job = findJob(uri);
+        return job == null ? null : CropExporter.getMimeType(job.format);
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("read only: " + uri);
+        }
+        final CropJob job = findJob(uri);
+        if (job == null) {
+            throw new FileNotFoundException("no crop: " + uri);
+        }
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("create pipe failed: " + e.getMessage());
+        }
+        final Context context = getContext();
+        // 在后台线程编码并写入管道写端，接收方读多少写多少
+        sWriter.execute(() -> {
+            try (OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1])) {
+                CropExporter.export(context, job.source, job.edit, job.format, CropExporter.DEFAULT_QUALITY, out);
+            } catch (IOException e) {
+                // 接收方提前关闭读端时也会走到这里
+                Log.w(TAG, "write crop failed: " + uri, e);
+            }
+        });
+        return pipe[0];
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        return 0;
+    }
+
+    /**
+     * [ 根据URI查找剪裁任务 ]
+     *
+     * @param uri uri
+     * @return 剪裁任务|null
+     */
+    private static CropJob findJob(Uri uri) {
+        if (!AUTHORITY.equals(uri.getAuthority()) || uri.getPathSegments().size() != 2
+                || !PATH_CROP.equals(uri.getPathSegments().get(0))) {
+            return null;
+        }
+        String name = uri.getLastPathSegment();
+        int dot = name.indexOf('.');
+        try {
+            long id = Long.parseLong(dot < 0 ? name : name.substring(0, dot));
+            synchronized (sJobs) {
+                return sJobs.get(id);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一次剪裁分享的参数
+     */
+    private static class CropJob {
+        final Uri source;
+        final EditResult edit;
+        final Bitmap.CompressFormat format;
+
+        CropJob(Uri source, EditResult edit, Bitmap.CompressFormat format) {
+            this.source = source;
+            this.edit = edit;
+            this.format = format;
+        }
+    }
+}
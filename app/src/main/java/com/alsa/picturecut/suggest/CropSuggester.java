@@ -0,0 +1,169 @@
+package com.alsa.picturecut.suggest;
+
+/**
+ * CropSuggester [ 根据图像内容推荐初始剪裁区域 ]
+ * 先计算边缘能量的积分图（summed-area table），任意矩形内的能量只需4次查表；
+ * 每个比例在粗网格上打分：9个尺寸，位置步长为可移动范围的1/48（向下取整，至少1px），
+ * 末端位置总会评估，256px的预览图只需几毫秒
+ */
+public class CropSuggester {
+    /**
+     * 推荐所用像素图的最大边长，调用方应先缩小到此尺寸以内
+     */
+    public static final int MAX_SIDE = 256;
+
+    /**
+     * 与原图相同的比例
+     */
+    public static final float ORIGINAL = 0;
+
+    /**
+     * 面积惩罚系数，越大推荐的剪裁越紧
+     */
+    private static final float AREA_PENALTY = 0.3f;
+
+    /**
+     * 偏离中心的惩罚系数，分数相近时优先居中
+     */
+    private static final float CENTER_PENALTY = 0.02f;
+
+    /**
+     * 最小尺寸相对该比例最大尺寸的比例
+     */
+    private static final float MIN_SCALE = 0.6f;
+
+    /**
+     * 尺寸和位置的网格步数，位置步长向下取整后末端位置单独加入
+     */
+    private static final int SCALE_STEPS = 8;
+    private static final int POSITION_STEPS = 48;
+
+    private CropSuggester() {
+    }
+
+    /**
+     * [ 推荐剪裁区域 ]
+     *
+     * @param pixels       ARGB像素，行优先
+     * @param width        宽
+     * @param height       高
+     * @param aspectRatios 候选的宽高比，{@link #ORIGINAL}表示原图比例
+     * @return 归一化的 {left, top, right, bottom}，取值0~1；纯色图像为第一个比例居中的最大区域
+     */
+    public static float[] suggest(int[] pixels, int width, int height, float[] aspectRatios) {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("bad pixels " + width + "x" + height);
+        }
+        long[] table = buildEnergyTable(pixels, width, height);
+        int stride = width + 1;
+        long total = table[height * stride + width];
+        float[] best = {0, 0, 1, 1};
+        if (total == 0) {
+            // 纯色图像没有可参考的内容，取第一个比例居中的最大区域
+            return centerCut(width, height, aspectRatios.length > 0 ? aspectRatios[0] : ORIGINAL);
+        }
+        float bestScore = -Float.MAX_VALUE;
+        float area = (float) width * height;
+        for (float ratio : aspectRatios) {
+            if (ratio <= 0) {
+                ratio = (float) width / height;
+            }
+            // 该比例下能放入图像的最大尺寸
+            float maxWidth = Math.min(width, height * ratio);
+            float maxHeight = maxWidth / ratio;
+            for (int s = 0; s <= SCALE_STEPS; s++) {
+                float scale = 1 - (1 - MIN_SCALE) * s / SCALE_STEPS;
+                int cropWidth = Math.max(1, Math.round(maxWidth * scale));
+                int cropHeight = Math.max(1, Math.round(maxHeight * scale));
+                int spanX = width - cropWidth;
+                int spanY = height - cropHeight;
+                int stepX = Math.max(1, spanX / POSITION_STEPS);
+                int stepY = Math.max(1, spanY / POSITION_STEPS);
+                // 步长向下取整，最后一步截到末端，贴边的区域也会被评估
+                int countX = (spanX + stepX - 1) / stepX;
+                int countY = (spanY + stepY - 1) / stepY;
+                float areaFraction = cropWidth * cropHeight / area;
+                for (int j = 0; j <= countY; j++) {
+                    int y = Math.min(j * stepY, spanY);
+                    for (int i = 0; i <= countX; i++) {
+                        int x = Math.min(i * stepX, spanX);
+                        long energy = table[(y + cropHeight) * stride + x + cropWidth]
+                                - table[y * stride + x + cropWidth]
+                                - table[(y + cropHeight) * stride + x]
+                                + table[y * stride + x];
+                        float dx = (x + cropWidth / 2f) / width - 0.5f;
+                        float dy = (y + cropHeight / 2f) / height - 0.5f;
+                        float score = (float) energy / total - AREA_PENALTY * areaFraction
+                                - CENTER_PENALTY * (Math.abs(dx) + Math.abs(dy));
+                        if (score > bestScore) {
+                            bestScore = score;
+                            best[0] = (float) x / width;
+                            best[1] = (float) y / height;
+                            best[2] = (float) (x + cropWidth) / width;
+                            best[3] = (float) (y + cropHeight) / height;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * [ 计算某比例下居中的最大区域 ]
+     *
+     * @param width  宽
+     * @param height 高
+     * @param ratio  宽高比，{@link #ORIGINAL}表示原图比例
+     * @return 归一化的 {left, top, right, bottom}
+     */
+    private static float[] centerCut(int width, int height, float ratio) {
+        float cutWidth = 1;
+        float cutHeight = 1;
+        if (ratio > 0) {
+            float imageRatio = (float) width / height;
+            if (ratio > imageRatio) {
+                cutHeight = imageRatio / ratio;
+            } else {
+                cutWidth = ratio / imageRatio;
+            }
+        }
+        float left = (1 - cutWidth) / 2;
+        float top = (1 - cutHeight) / 2;
+        return new float[]{left, top, left + cutWidth, top + cutHeight};
+    }
+
+    /**
+     * [ 计算边缘能量的积分图 ]
+     * 能量为亮度在水平、垂直方向的中心差分绝对值之和；
+     * table[(y) * (width + 1) + x] 为 (0, 0) ~ (x, y) 矩形内的能量和，首行首列为0
+     *
+     * @param pixels ARGB像素
+     * @param width  宽
+     * @param height 高
+     * @return (width + 1) * (height + 1) 的积分图
+     */
+    static long[] buildEnergyTable(int[] pixels, int width, int height) {
+        int[] luma = new int[width * height];
+        for (int i = 0; i < luma.length; i++) {
+            int color = pixels[i];
+            luma[i] = (77 * ((color >> 16) & 0xff) + 150 * ((color >> 8) & 0xff) + 29 * (color & 0xff)) >> 8;
+        }
+        int stride = width + 1;
+        long[] table = new long[stride * (height + 1)];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int up = (y > 0 ? y - 1 : y) * width;
+            int down = (y < height - 1 ? y + 1 : y) * width;
+            long rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                int left = x > 0 ? x - 1 : x;
+                int right = x < width - 1 ? x + 1 : x;
+                int energy = Math.abs(luma[row + right] - luma[row + left]) + Math.abs(luma[down + x] - luma[up + x]);
+                rowSum += energy;
+                table[(y + 1) * stride + x + 1] = table[y * stride + x + 1] + rowSum;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,130 @@
+package com.alsa.picturecut.view;
+
+/**
+ * CropConstraintSolver [ 九宫格拖动的约束求解 ]
+ * 触摸区域先转换为被拖动的边的掩码，被拖动的边移到手指位置后，统一按图像边界和最小尺寸夹紧；
+ * 九个区域共用同一套计算，每条边只有min/max和一次选择，没有按区域的分支。
+ * 矩形为 {left, top, right, bottom}，原地修改，不分配内存
+ */
+final class CropConstraintSolver {
+    /**
+     * 矩形数组的下标
+     */
+    static final int LEFT = 0;
+    static final int TOP = 1;
+    static final int RIGHT = 2;
+    static final int BOTTOM = 3;
+
+    /**
+     * 被拖动的边的掩码，四条边同时拖动表示平移
+     */
+    static final int EDGE_LEFT = 1;
+    static final int EDGE_TOP = 1 << 1;
+    static final int EDGE_RIGHT = 1 << 2;
+    static final int EDGE_BOTTOM = 1 << 3;
+    static final int EDGE_ALL = EDGE_LEFT | EDGE_TOP | EDGE_RIGHT | EDGE_BOTTOM;
+
+    private CropConstraintSolver() {
+    }
+
+    /**
+     * [ 拖动掩码中的边到手指位置，夹紧到图像边界内且不小于最小尺寸 ]
+     * 两个约束冲突时最小尺寸优先
+     *
+     * @param rect      九宫格
+     * @param mask      被拖动的边，不同时包含相对的两条边
+     * @param x         手指x
+     * @param y         手指y
+     * @param bounds    图像边界
+     * @param minWidth  最小宽度
+     * @param minHeight 最小高度
+     */
+    static void drag(float[] rect, int mask, float x, float y, float[] bounds, float minWidth, float minHeight) {
+        float left = rect[LEFT];
+        float top = rect[TOP];
+        float right = rect[RIGHT];
+        float bottom = rect[BOTTOM];
+        rect[LEFT] = (mask & EDGE_LEFT) != 0 ? Math.min(Math.max(x, bounds[LEFT]), right - minWidth) : left;
+        rect[TOP] = (mask & EDGE_TOP) != 0 ? Math.min(Math.max(y, bounds[TOP]), bottom - minHeight) : top;
+        rect[RIGHT] = (mask & EDGE_RIGHT) != 0 ? Math.max(Math.min(x, bounds[RIGHT]), left + minWidth) : right;
+        rect[BOTTOM] = (mask & EDGE_BOTTOM) != 0 ? Math.max(Math.min(y, bounds[BOTTOM]), top + minHeight) : bottom;
+    }
+
+    /**
+     * [ 平移九宫格，尺寸不变，不超出图像边界 ]
+     *
+     * @param rect   九宫格
+     * @param dx     x方向的位移
+     * @param dy     y方向的位移
+     * @param bounds 图像边界
+     */
+    static void move(float[] rect, float dx, float dy, float[] bounds) {
+        dx = Math.min(Math.max(dx, bounds[LEFT] - rect[LEFT]), bounds[RIGHT] - rect[RIGHT]);
+        dy = Math.min(Math.max(dy, bounds[TOP] - rect[TOP]), bounds[BOTTOM] - rect[BOTTOM]);
+        rect[LEFT] += dx;
+        rect[TOP] += dy;
+        rect[RIGHT] += dx;
+        rect[BOTTOM] += dy;
+    }
+
+    /**
+     * [ 按宽高比修正拖动后的九宫格 ]
+     * 拖动边时由该边决定尺寸，另一方向以中心缩放；拖动角时以变化大的一边为准，固定对角；
+     * 超出图像时等比缩小，小于最小尺寸时等比放大
+     *
+     * @param rect        {@link #drag}之后的九宫格
+     * @param mask        被拖动的边
+     * @param aspectRatio 宽高比
+     * @param bounds      图像边界
+     * @param minWidth    最小宽度，与最小高度符合宽高比且不超出图像
+     * @param minHeight   最小高度
+     */
+    static void lockAspectRatio(float[] rect, int mask, float aspectRatio, float[] bounds,
+                                float minWidth, float minHeight) {
+        boolean moveLeft = (mask & EDGE_LEFT) != 0;
+        boolean moveRight = (mask & EDGE_RIGHT) != 0;
+        boolean moveTop = (mask & EDGE_TOP) != 0;
+        boolean moveBottom = (mask & EDGE_BOTTOM) != 0;
+        float width = rect[RIGHT] - rect[LEFT];
+        float height = rect[BOTTOM] - rect[TOP];
+        if (!moveTop && !moveBottom) {
+            height = width / aspectRatio;
+        } else if (!moveLeft && !moveRight) {
+            width = height * aspectRatio;
+        } else if (width / height > aspectRatio) {
+            height = width / aspectRatio;
+        } else {
+            width = height * aspectRatio;
+        }
+
+        // 固定的边到图像边界的距离为最大尺寸，以中心缩放的方向可以使用整个图像
+        float maxWidth = moveLeft ? rect[RIGHT] - bounds[LEFT]
+                : moveRight ? bounds[RIGHT] - rect[LEFT] : bounds[RIGHT] - bounds[LEFT];
+        float maxHeight = moveTop ? rect[BOTTOM] - bounds[TOP]
+                : moveBottom ? bounds[BOTTOM] - rect[TOP] : bounds[BOTTOM] - bounds[TOP];
+        float scale = Math.min(1, Math.min(maxWidth / width, maxHeight / height));
+        width *= scale;
+        height *= scale;
+        if (width < minWidth) {
+            width = minWidth;
+            height = minHeight;
+        }
+
+        if (moveLeft) {
+            rect[LEFT] = rect[RIGHT] - width;
+        } else if (moveRight) {
+            rect[RIGHT] = rect[LEFT] + width;
+        } else {
+            rect[LEFT] = Math.max(bounds[LEFT], Math.min((rect[LEFT] + rect[RIGHT] - width) / 2, bounds[RIGHT] - width));
+            rect[RIGHT] = rect[LEFT] + width;
+        }
+        if (moveTop) {
+            rect[TOP] = rect[BOTTOM] - height;
+        } else if (moveBottom) {
+            rect[BOTTOM] = rect[TOP] + height;
+        } else {
+            rect[TOP] = Math.max(bounds[TOP], Math.min((rect[TOP] + rect[BOTTOM] - height) / 2, bounds[BOTTOM] - height));
+            rect[BOTTOM] = rect[TOP] + height;
+        }
+    }
+}
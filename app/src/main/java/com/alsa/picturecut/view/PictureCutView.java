@@ -2,12 +2,13 @@ package com.alsa.picturecut.view;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
+import android.graphics.RectF;
+import android.net.Uri;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.MotionEvent;
@@ -15,12 +16,27 @@ import android.view.View;
 import android.view.WindowManager;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.alsa.picturecut.decode.Decoders;
+import com.alsa.picturecut.decode.RegionDecoder;
+import com.alsa.picturecut.edit.EditHistory;
+import com.alsa.picturecut.edit.EditResult;
+import com.alsa.picturecut.edit.EditStack;
+import com.alsa.picturecut.metrics.CropMetrics;
+import com.alsa.picturecut.suggest.CropSuggester;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * PictureCutView [ 实现剪裁功能的自定义View ]
  * created by alsa on 2019/12/12
  */
 public class PictureCutView extends View {
+
     /**
      * 画笔
      */
@@ -47,6 +63,17 @@ public class PictureCutView extends View {
     private float mDrawBitmapStartX;
     private float mDrawBitmapStartY;
 
+    /**
+     * 编辑结果在屏幕上的显示宽高
+     */
+    private float mDisplayWidth;
+    private float mDisplayHeight;
+
+    /**
+     * 绘制图像的矩阵，融合了所有几何编辑和屏幕缩放
+     */
+    private final Matrix mDrawMatrix = new Matrix();
+
     /**
      * 图像的左、上、右、下值
      */
@@ -74,6 +101,22 @@ public class PictureCutView extends View {
     private static final int BOTTOM_BORDER = 8;
     private static final int CENTER = 9;
 
+    /**
+     * 各触摸区域拖动的边，下标为触摸区域的标识，中心区域为平移
+     */
+    private static final int[] EDGE_MASKS = {
+            0,
+            CropConstraintSolver.EDGE_LEFT | CropConstraintSolver.EDGE_TOP,
+            CropConstraintSolver.EDGE_RIGHT | CropConstraintSolver.EDGE_TOP,
+            CropConstraintSolver.EDGE_RIGHT | CropConstraintSolver.EDGE_BOTTOM,
+            CropConstraintSolver.EDGE_LEFT | CropConstraintSolver.EDGE_BOTTOM,
+            CropConstraintSolver.EDGE_LEFT,
+            CropConstraintSolver.EDGE_TOP,
+            CropConstraintSolver.EDGE_RIGHT,
+            CropConstraintSolver.EDGE_BOTTOM,
+            CropConstraintSolver.EDGE_ALL
+    };
+
     /**
      * 手指触摸区域的标识
      */
@@ -87,6 +130,12 @@ public class PictureCutView extends View {
     private float mCutStopX;
     private float mCutStopY;
 
+    /**
+     * 约束求解用的九宫格和图像边界，{left, top, right, bottom}
+     */
+    private final float[] mCutEdges = new float[4];
+    private final float[] mBitmapBounds = new float[4];
+
     /**
      * 移动后九宫格的宽度，高度
      */
@@ -94,9 +143,31 @@ public class PictureCutView extends View {
     private float mCutHeight;
 
     /**
-     * 九宫格的最小宽度和高度
+     * 未设置输出尺寸时九宫格的最小宽高，原图像素
+     */
+    private static final int MIN_CUT_SOURCE_PIXELS = 300;
+
+    /**
+     * 九宫格在屏幕上的最小宽高，保证四个角的触摸区域不重叠
      */
-    private static final int MIN_MASK_WIDTH_HEIGHT = 300;
+    private static final int MIN_CUT_TOUCH_SIZE = 100;
+
+    /**
+     * 九宫格的最小宽度和高度，由原图像素换算为屏幕像素
+     */
+    private float mMinCutWidth;
+    private float mMinCutHeight;
+
+    /**
+     * 锁定的宽高比，0为自由剪裁
+     */
+    private float mAspectRatio;
+
+    /**
+     * 输出图像的宽高，0为剪裁区域的原图像素尺寸
+     */
+    private int mOutputWidth;
+    private int mOutputHeight;
 
     /**
      * 手指可触摸区域的左、上、右、下值
@@ -117,6 +188,81 @@ public class PictureCutView extends View {
      */
     private int mCutFlag;
 
+    /**
+     * 原图的宽高
+     */
+    private int mSourceWidth;
+    private int mSourceHeight;
+
+    /**
+     * 显示图像相对编辑结果的缩放比
+     */
+    private float mScale = 1;
+
+    /**
+     * 已应用的旋转、翻转、微调角度，九宫格为其上待应用的剪裁
+     * 几何变换统一按 翻转 -> 旋转 -> 微调角度 的顺序保存，便于用几个基本类型记录历史
+     */
+    private int mQuarterTurns;
+    private int mFlipFlags;
+    private float mStraighten;
+
+    /**
+     * 由几何变换生成的编辑栈
+     */
+    private final EditStack mEditStack = new EditStack();
+
+    /**
+     * 编辑栈融合后的结果，编辑栈变化时更新
+     */
+    private EditResult mEditResult;
+
+    /**
+     * 初始剪裁区域的计算结果，归一化，避免绘制时分配
+     */
+    private final float[] mInitialCut = new float[4];
+
+    /**
+     * 撤销/重做历史，每步只记录剪裁区域和几何变换
+     */
+    private final EditHistory mHistory = new EditHistory();
+
+    /**
+     * 计算推荐剪裁的后台线程
+     */
+    private static final ExecutorService sSuggestExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * 锁定宽高比时推荐区域比例的相对误差上限，推荐在缩小后的预览图上按整像素计算
+     */
+    private static final float SUGGESTION_RATIO_TOLERANCE = 0.02f;
+
+    /**
+     * 推荐剪裁的候选宽高比
+     */
+    private float[] mSuggestAspectRatios = {CropSuggester.ORIGINAL, 1, 4f / 3, 3f / 4};
+
+    /**
+     * 推荐的初始剪裁区域，相对编辑结果归一化，null表示整张图像
+     */
+    private float[] mSuggestedCut;
+
+    /**
+     * 推荐版本号，设置图像或剪裁约束变化时递增，用于丢弃过期的推荐结果
+     */
+    private int mSuggestionGeneration;
+
+    /**
+     * 最多暂存的未绘制MOVE事件数，一帧内通常只有一两个，超出的不统计
+     */
+    private static final int MAX_PENDING_TOUCHES = 16;
+
+    /**
+     * 上次绘制后的各MOVE事件时间，纳秒，绘制时逐个统计触摸到绘制的延迟
+     */
+    private final long[] mPendingTouchNanos = new long[MAX_PENDING_TOUCHES];
+    private int mPendingTouchCount;
+
     public PictureCutView(Context context) {
         this(context, null);
     }
@@ -134,9 +280,112 @@ public class PictureCutView extends View {
      * activity设置图片路径
      *
      * @param photoPath 图片路径
+     * @throws IOException 无法打开或解码
+     */
+    public void setPhotoPath(String photoPath) throws IOException {
+        setPhotoUri(Uri.fromFile(new File(photoPath)));
+    }
+
+    /**
+     * activity设置图片URI，支持content://和file://
+     * 按文件头识别格式后选择解码器，预览按屏幕分辨率采样解码
+     *
+     * @param photoUri 图片URI
+     * @throws IOException 无法打开或解码，此时保留原来的图像
+     */
+    public void setPhotoUri(Uri photoUri) throws IOException {
+        Bitmap bitmap;
+        int sourceWidth;
+        int sourceHeight;
+        try (RegionDecoder decoder = Decoders.open(getContext(), photoUri)) {
+            sourceWidth = decoder.getWidth();
+            sourceHeight = decoder.getHeight();
+            // 预览只需屏幕分辨率，按2的幂采样解码
+            DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+            int maxSide = Math.max(displayMetrics.widthPixels, displayMetrics.heightPixels);
+            int sampleSize = Decoders.getSampleSize(sourceWidth, sourceHeight, maxSide);
+            CropMetrics metrics = CropMetrics.get();
+            long start = metrics == null ? 0 : metrics.begin(CropMetrics.DECODE);
+            try {
+                bitmap = decoder.decode(sampleSize);
+            } finally {
+                if (metrics != null) {
+                    metrics.end(CropMetrics.DECODE, start);
+                }
+            }
+        }
+        setBitmap(bitmap, sourceWidth, sourceHeight);
+        requestSuggestion();
+    }
+
+    /**
+     * 设置推荐初始剪裁时的候选宽高比
+     *
+     * @param aspectRatios 宽高比，{@link CropSuggester#ORIGINAL}为原图比例
+     */
+    public void setSuggestAspectRatios(float... aspectRatios) {
+        mSuggestAspectRatios = aspectRatios.clone();
+    }
+
+    /**
+     * 锁定剪裁的宽高比，清除输出尺寸，九宫格恢复为该比例的初始区域
+     *
+     * @param aspectRatio 宽高比，0为自由剪裁
      */
-    public void setPhotoPath(String photoPath) {
-        mBitmap = BitmapFactory.decodeFile(photoPath);
+    public void setAspectRatio(float aspectRatio) {
+        mAspectRatio = Math.max(0, aspectRatio);
+        mOutputWidth = 0;
+        mOutputHeight = 0;
+        onCutConstraintChanged();
+    }
+
+    /**
+     * 设置输出图像尺寸，同时锁定为相同的宽高比
+     * 剪裁区域最小为输出尺寸的原图像素，导出时一次重采样到该尺寸
+     *
+     * @param width  输出宽，像素，0为不限制
+     * @param height 输出高，像素，0为不限制
+     */
+    public void setOutputSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            mOutputWidth = 0;
+            mOutputHeight = 0;
+            mAspectRatio = 0;
+        } else {
+            mOutputWidth = width;
+            mOutputHeight = height;
+            mAspectRatio = (float) width / height;
+        }
+        onCutConstraintChanged();
+    }
+
+    public float getAspectRatio() {
+        return mAspectRatio;
+    }
+
+    /**
+     * 设置预览图像，重置编辑状态
+     *
+     * @param bitmap       预览图像，可以是原图的采样
+     * @param sourceWidth  原图宽
+     * @param sourceHeight 原图高
+     */
+    @VisibleForTesting
+    void setBitmap(Bitmap bitmap, int sourceWidth, int sourceHeight) {
+        mBitmap = bitmap;
+        mSourceWidth = sourceWidth;
+        mSourceHeight = sourceHeight;
+        mSuggestionGeneration++;
+        mSuggestedCut = null;
+
+        // 新图像重置编辑状态，记录初始状态
+        mTouchFlag = 0;
+        mQuarterTurns = 0;
+        mFlipFlags = 0;
+        mStraighten = 0;
+        buildEditStack();
+        mHistory.clear();
+        pushInitialCut();
     }
 
     /**
@@ -145,11 +394,45 @@ public class PictureCutView extends View {
      * @param height 标题栏的高度
      */
     public void setActionBarHeight(int height) {
-        scaleBitmap(getContext(), height);
+        calculateAvailableSize(getContext(), height);
+        calculateBitmapPos();
+        invalidate();
+    }
+
+    /**
+     * 直接设置可用宽高，不依赖屏幕尺寸
+     *
+     * @param width  可用宽
+     * @param height 可用高
+     */
+    @VisibleForTesting
+    void setAvailableSize(float width, float height) {
+        mAvailableScreenWidth = width;
+        mAvailableScreenHeight = height;
         calculateBitmapPos();
         invalidate();
     }
 
+    /**
+     * 获取九宫格的位置，屏幕坐标
+     *
+     * @return left/top/right/bottom
+     */
+    @VisibleForTesting
+    RectF getCutRect() {
+        return new RectF(mCutStartX, mCutStartY, mCutStopX, mCutStopY);
+    }
+
+    /**
+     * 获取九宫格的宽高
+     *
+     * @return {宽, 高}
+     */
+    @VisibleForTesting
+    float[] getCutSize() {
+        return new float[]{mCutWidth, mCutHeight};
+    }
+
     /**
      * 外部调用接口，Activity通知View剪裁图像
      *
@@ -160,18 +443,113 @@ public class PictureCutView extends View {
         invalidate();
     }
 
+    /**
+     * 获取当前的编辑结果，包含已应用的几何编辑和九宫格剪裁
+     *
+     * @return 融合后的编辑结果，坐标为原图像素
+     * @throws IllegalStateException 尚未设置图像
+     */
+    public EditResult getEditResult() {
+        if (mBitmap == null) {
+            throw new IllegalStateException("no image");
+        }
+        EditStack stack = new EditStack(mEditStack);
+        stack.crop(new RectF(
+                (mCutStartX - mBitmapLeft) / mScale,
+                (mCutStartY - mBitmapTop) / mScale,
+                (mCutStopX - mBitmapLeft) / mScale,
+                (mCutStopY - mBitmapTop) / mScale));
+        if (mOutputWidth > 0 && mOutputHeight > 0) {
+            stack.resize(mOutputWidth, mOutputHeight);
+        }
+        return stack.fuse(mSourceWidth, mSourceHeight);
+    }
+
+    /**
+     * 顺时针旋转90°
+     */
+    public void rotate() {
+        mQuarterTurns = (mQuarterTurns + 1) % 4;
+        onEditChanged();
+    }
+
+    /**
+     * 水平翻转
+     */
+    public void flipHorizontal() {
+        // 旋转奇数次后，画面的水平翻转等价于原图的垂直翻转
+        mFlipFlags ^= mQuarterTurns % 2 == 0 ? EditHistory.FLAG_FLIP_HORIZONTAL : EditHistory.FLAG_FLIP_VERTICAL;
+        // 翻转后微调角度反向
+        mStraighten = -mStraighten;
+        onEditChanged();
+    }
+
+    /**
+     * 垂直翻转
+     */
+    public void flipVertical() {
+        mFlipFlags ^= mQuarterTurns % 2 == 0 ? EditHistory.FLAG_FLIP_VERTICAL : EditHistory.FLAG_FLIP_HORIZONTAL;
+        mStraighten = -mStraighten;
+        onEditChanged();
+    }
+
+    /**
+     * 微调角度
+     *
+     * @param degrees 角度，正数为顺时针
+     */
+    public void straighten(float degrees) {
+        mStraighten += degrees;
+        onEditChanged();
+    }
+
+    /**
+     * 撤销上一步剪裁或几何变换
+     *
+     * @return 是否撤销成功
+     */
+    public boolean undo() {
+        if (!mHistory.undo()) {
+            return false;
+        }
+        restoreHistory();
+        return true;
+    }
+
+    /**
+     * 重做下一步剪裁或几何变换
+     *
+     * @return 是否重做成功
+     */
+    public boolean redo() {
+        if (!mHistory.redo()) {
+            return false;
+        }
+        restoreHistory();
+        return true;
+    }
+
+    public boolean canUndo() {
+        return mHistory.canUndo();
+    }
+
+    public boolean canRedo() {
+        return mHistory.canRedo();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        canvas.drawBitmap(mBitmap, mDrawBitmapStartX, mDrawBitmapStartY, mPaint);
+        if (mBitmap == null) {
+            // 图像尚未设置或解码失败
+            return;
+        }
+        CropMetrics metrics = CropMetrics.get();
+        long start = metrics == null ? 0 : metrics.begin(CropMetrics.DRAW);
+        canvas.drawBitmap(mBitmap, mDrawMatrix, mPaint);
         // 绘制九宫格
         if (mTouchFlag == 0) {
-            mCutHeight = mBitmap.getHeight();
-            mCutWidth = mBitmap.getWidth();
-            mCutStartX = mDrawBitmapStartX;
-            mCutStartY = mDrawBitmapStartY;
-            mCutStopX = mDrawBitmapStartX + mCutWidth;
-            mCutStopY = mDrawBitmapStartY + mCutHeight;
+            initCutRect();
         }
         drawMask(canvas);
         if (mCutFlag != 0) {
@@ -180,12 +558,24 @@ public class PictureCutView extends View {
             // 裁剪图像
             canvas.clipRect(mCutStartX, mCutStartY, mCutStopX, mCutStopY);
             // 绘制图像
-            canvas.drawBitmap(mBitmap, mDrawBitmapStartX, mDrawBitmapStartY, mPaint);
+            canvas.drawBitmap(mBitmap, mDrawMatrix, mPaint);
+        }
+        if (metrics != null) {
+            metrics.end(CropMetrics.DRAW, start);
+            // MotionEvent的时间与System.nanoTime()同为系统启动后的单调时钟，但只有毫秒精度
+            long now = System.nanoTime();
+            for (int i = 0; i < mPendingTouchCount; i++) {
+                metrics.record(CropMetrics.TOUCH_TO_DRAW, now - mPendingTouchNanos[i]);
+            }
         }
+        mPendingTouchCount = 0;
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (mBitmap == null) {
+            return super.onTouchEvent(event);
+        }
         if (event.getAction() == MotionEvent.ACTION_DOWN) {
             // 获取手指的触摸区域
             mTouchFlag = getTouchFlag(event);
@@ -194,210 +584,21 @@ public class PictureCutView extends View {
                 mLastEventY = event.getY();
             }
         } else if (event.getAction() == MotionEvent.ACTION_MOVE) {
-            // 获取手指移动点的X,Y值
-            float eventX = event.getX();
-            float eventY = event.getY();
-
-            // 改变九宫格的大小和位置
-            switch (mTouchFlag) {
-                case LEFT_BORDER:
-                    // 超出图像左边界
-                    if (eventX <= mBitmapLeft) {
-                        mCutWidth = mCutStopX - mBitmapLeft;
-                        mCutStartX = mBitmapLeft;
-                    }
-                    // 达到最小尺寸
-                    if (eventX >= mCutStopX - MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStartX = mCutStopX - MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 在图像左边界和最小尺寸之间移动
-                    if (eventX > mBitmapLeft && eventX < mCutStopX - MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = mCutStopX - eventX;
-                        mCutStartX = eventX;
-                    }
-                    break;
-                case TOP_BORDER:
-                    // 超出图像上边界
-                    if (eventY <= mBitmapTop) {
-                        mCutHeight = mCutStopY - mBitmapTop;
-                        mCutStartY = mBitmapTop;
-                    }
-                    // 达到最小尺寸
-                    if (eventY >= mCutStopY - MIN_MASK_WIDTH_HEIGHT) {
-                        mCutHeight = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStartY = mCutStopY - MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 在图像上边界和最小尺寸之间移动
-                    if (eventY > mBitmapTop && eventY < mCutStopY - MIN_MASK_WIDTH_HEIGHT) {
-                        mCutHeight = mCutStopY - eventY;
-                        mCutStartY = eventY;
-                    }
-                    break;
-                case RIGHT_BORDER:
-                    // 超出图像右边界
-                    if (eventX >= mBitmapRight) {
-                        mCutWidth = mBitmap.getWidth() - mCutStartX;
-                        mCutStopX = mBitmapRight;
-                    }
-                    // 达到最小尺寸
-                    if (eventX <= mCutStartX + MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStopX = mCutStartX + MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 在图像右边界和最小尺寸之间移动
-                    if (eventX < mBitmapRight && eventX > mCutStartX + MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = eventX - mCutStartX;
-                        mCutStopX = eventX;
-                    }
-                    break;
-                case BOTTOM_BORDER:
-                    // 超出图像下边界
-                    if (eventY >= mBitmapBottom) {
-                        mCutHeight = mBitmap.getHeight() - mCutStartY;
-                        mCutStopY = mBitmapBottom;
-                    }
-                    // 达到最小尺寸
-                    if (eventY <= mCutStartY + MIN_MASK_WIDTH_HEIGHT) {
-                        mCutHeight = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStopY = mCutStartY + MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 在图像下边界和最小尺寸之间移动
-                    if (eventY < mBitmapBottom && eventY > mCutStartY + MIN_MASK_WIDTH_HEIGHT) {
-                        mCutHeight = eventY - mCutStartY;
-                        mCutStopY = eventY;
-                    }
-                    break;
-                case LEFT_TOP_CORNER:
-                    // 手指的X值超出图像左侧边界
-                    if (eventX <= mBitmapLeft) {
-                        mCutWidth = mCutStopX - mBitmapLeft;
-                        mCutStartX = mBitmapLeft;
-                    } else if (eventX >= mCutStopX - MIN_MASK_WIDTH_HEIGHT) { // 手指的X值达到最小尺寸
-                        mCutWidth = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStartX = mCutStopX - MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指的Y值超出图像顶部边界
-                    if (eventY <= mBitmapTop) {
-                        mCutHeight = mCutStopY - mBitmapTop;
-                        mCutStartY = mBitmapTop;
-                    } else if (eventY >= mCutStopY - MIN_MASK_WIDTH_HEIGHT) { // 手指的Y值达到最小尺寸
-                        mCutHeight = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStartY = mCutStopY - MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指在图像边界和最小尺寸之间移动
-                    if (eventX > mBitmapLeft && eventX < mCutStopX - MIN_MASK_WIDTH_HEIGHT
-                            && eventY > mBitmapTop && eventY < mCutStopY - MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = mCutStopX - eventX;
-                        mCutHeight = mCutStopY - eventY;
-                        mCutStartX = eventX;
-                        mCutStartY = eventY;
-                    }
-                    break;
-                case RIGHT_TOP_CORNER:
-                    // 手指的X值超出图像右侧边界
-                    if (eventX >= mBitmapRight) {
-                        mCutWidth = mBitmap.getWidth() - mCutStartX;
-                        mCutStopX = mBitmapRight;
-                    } else if (eventX <= mCutStartX + MIN_MASK_WIDTH_HEIGHT) { // 手指的X值达到最小尺寸
-                        mCutWidth = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStopX = mCutStartX + MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指的Y值超出图像顶部边界
-                    if (eventY <= mBitmapTop) {
-                        mCutHeight = mCutStopY - mBitmapTop;
-                        mCutStartY = mBitmapTop;
-                    } else if (eventY >= mCutStopY - MIN_MASK_WIDTH_HEIGHT) { // 手指的Y值达到最小尺寸
-                        mCutHeight = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStartY = mCutStopY - MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指在图像边界和最小尺寸之间移动
-                    if (eventX > mCutStartX + MIN_MASK_WIDTH_HEIGHT && eventX < mBitmapRight
-                            && eventY > mBitmapTop && eventY < mCutStopY - MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = eventX - mCutStartX;
-                        mCutHeight = mCutStopY - eventY;
-                        mCutStopX = eventX;
-                        mCutStartY = eventY;
-                    }
-                    break;
-                case LEFT_BOTTOM_CORNER:
-                    // 手指的X值超出图像左侧边界
-                    if (eventX <= mBitmapLeft) {
-                        mCutWidth = mCutStopX - mBitmapLeft;
-                        mCutStartX = mBitmapLeft;
-                    } else if (eventX >= mCutStopX - MIN_MASK_WIDTH_HEIGHT) { // 手指的X值达到最小尺寸
-                        mCutWidth = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStartX = mCutStopX - MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指的Y值超出图像底部边界
-                    if (eventY >= mBitmapBottom) {
-                        mCutHeight = mBitmapBottom - mCutStartY;
-                        mCutStopY = mBitmapBottom;
-                    } else if (eventY <= mCutStartY + MIN_MASK_WIDTH_HEIGHT) { // 手指的Y值达到最小尺寸
-                        mCutHeight = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStopY = mCutStartY + MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指在图像边界和最小尺寸之间移动
-                    if (eventX > mBitmapLeft && eventX < mCutStopX - MIN_MASK_WIDTH_HEIGHT
-                            && eventY < mBitmapBottom && eventY > mCutStartY + MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = mCutStopX - eventX;
-                        mCutHeight = eventY - mCutStartY;
-                        mCutStartX = eventX;
-                        mCutStopY = eventY;
-                    }
-                    break;
-                case RIGHT_BOTTOM_CORNER:
-                    // 手指的X值超出图像右侧边界
-                    if (eventX >= mBitmapRight) {
-                        mCutWidth = mBitmap.getWidth() - mCutStartX;
-                        mCutStopX = mBitmapRight;
-                    } else if (eventX <= mCutStartX + MIN_MASK_WIDTH_HEIGHT) { // 手指的X值达到最小尺寸
-                        mCutWidth = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStopX = mCutStartX + MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指的Y值超出图像底部边界
-                    if (eventY >= mBitmapBottom) {
-                        mCutHeight = mBitmapBottom - mCutStartY;
-                        mCutStopY = mBitmapBottom;
-                    } else if (eventY <= mCutStartY + MIN_MASK_WIDTH_HEIGHT) { // 手指的Y值达到最小尺寸
-                        mCutHeight = MIN_MASK_WIDTH_HEIGHT;
-                        mCutStopY = mCutStartY + MIN_MASK_WIDTH_HEIGHT;
-                    }
-                    // 手指在图像边界和最小尺寸之间移动
-                    if (eventX > mCutStartX + MIN_MASK_WIDTH_HEIGHT && eventX < mBitmapRight
-                            && eventY < mBitmapBottom && eventY > mCutStartY + MIN_MASK_WIDTH_HEIGHT) {
-                        mCutWidth = eventX - mCutStartX;
-                        mCutHeight = eventY - mCutStartY;
-                        mCutStopX = eventX;
-                        mCutStopY = eventY;
-                    }
-                    break;
-                case CENTER:
-                    if (mCutStartX + eventX - mLastEventX <= mBitmapLeft) {  // 到达左边界
-                        mCutStartX = mBitmapLeft;
-                        mCutStopX = mBitmapLeft + mCutWidth;
-                    } else if (mCutStopX + eventX - mLastEventX >= mBitmapRight) {  // 到达右边界
-                        mCutStartX = mBitmapRight - mCutWidth;
-                        mCutStopX = mBitmapRight;
-                    } else {
-                        mCutStartX += eventX - mLastEventX;
-                        mCutStopX += eventX - mLastEventX;
-                    }
-                    if (mCutStartY + eventY - mLastEventY <= mBitmapTop) {  // 到达上边界
-                        mCutStartY = mBitmapTop;
-                        mCutStopY = mBitmapTop + mCutHeight;
-                    } else if (mCutStopY + eventY - mLastEventY >= mBitmapBottom) {  // 到达下边界
-                        mCutStartY = mBitmapBottom - mCutHeight;
-                        mCutStopY = mBitmapBottom;
-                    } else {
-                        mCutStartY += eventY - mLastEventY;
-                        mCutStopY += eventY - mLastEventY;
-                    }
-                    mLastEventX = eventX;
-                    mLastEventY = eventY;
-                    break;
+            if (mPendingTouchCount < MAX_PENDING_TOUCHES) {
+                // 每个MOVE事件各统计一次延迟，以事件的时间为准
+                mPendingTouchNanos[mPendingTouchCount++] = event.getEventTime() * 1000000L;
+            }
+            if (mTouchFlag > 0) {
+                // 依次处理合并在本次事件中的历史采样，结果与事件的分批方式无关
+                for (int i = 0, size = event.getHistorySize(); i < size; i++) {
+                    solveCutRect(event.getHistoricalX(i), event.getHistoricalY(i));
+                }
+                solveCutRect(event.getX(), event.getY());
             }
             invalidate();
+        } else if (event.getAction() == MotionEvent.ACTION_UP || event.getAction() == MotionEvent.ACTION_CANCEL) {
+            // 整个手势只记录一条历史，手势被取消时九宫格已经改变，同样记录
+            recordCrop();
         }
         return super.onTouchEvent(event);
     }
@@ -413,10 +614,12 @@ public class PictureCutView extends View {
         float touchX = event.getX();
         float touchY = event.getY();
         if (mTouchFlag == 0) {
-            mTouchLeft = mBitmapLeft;
-            mTouchTop = mBitmapTop;
-            mTouchRight = mBitmapRight;
-            mTouchBottom = mBitmapBottom;
+            // 尚未触摸时九宫格为初始区域：推荐区域、锁定比例的区域或整张图像
+            initCutRect();
+            mTouchLeft = mCutStartX;
+            mTouchTop = mCutStartY;
+            mTouchRight = mCutStopX;
+            mTouchBottom = mCutStopY;
         } else {
             mTouchLeft = mCutStartX;
             mTouchTop = mCutStartY;
@@ -501,26 +704,351 @@ public class PictureCutView extends View {
     }
 
     /**
-     * 计算绘制图像的起始位置及left、top、right、bottom值
+     * [ 按手指位置改变九宫格的大小和位置 ]
+     *
+     * @param eventX 手指x
+     * @param eventY 手指y
+     */
+    private void solveCutRect(float eventX, float eventY) {
+        float[] rect = mCutEdges;
+        rect[CropConstraintSolver.LEFT] = mCutStartX;
+        rect[CropConstraintSolver.TOP] = mCutStartY;
+        rect[CropConstraintSolver.RIGHT] = mCutStopX;
+        rect[CropConstraintSolver.BOTTOM] = mCutStopY;
+        int mask = EDGE_MASKS[mTouchFlag];
+        if (mask == CropConstraintSolver.EDGE_ALL) {
+            CropConstraintSolver.move(rect, eventX - mLastEventX, eventY - mLastEventY, mBitmapBounds);
+            mLastEventX = eventX;
+            mLastEventY = eventY;
+        } else {
+            CropConstraintSolver.drag(rect, mask, eventX, eventY, mBitmapBounds, mMinCutWidth, mMinCutHeight);
+            if (mAspectRatio > 0) {
+                CropConstraintSolver.lockAspectRatio(rect, mask, mAspectRatio, mBitmapBounds, mMinCutWidth, mMinCutHeight);
+            }
+        }
+        mCutStartX = rect[CropConstraintSolver.LEFT];
+        mCutStartY = rect[CropConstraintSolver.TOP];
+        mCutStopX = rect[CropConstraintSolver.RIGHT];
+        mCutStopY = rect[CropConstraintSolver.BOTTOM];
+        // 宽高总是由位置计算，与位置保持一致
+        mCutWidth = mCutStopX - mCutStartX;
+        mCutHeight = mCutStopY - mCutStartY;
+    }
+
+    /**
+     * 编辑栈变化后重新计算显示位置，九宫格恢复为初始区域
+     */
+    private void onEditChanged() {
+        buildEditStack();
+        mTouchFlag = 0;
+        // 推荐区域基于未变换的图像，几何变换后不再适用
+        mSuggestedCut = null;
+        calculateBitmapPos();
+        pushInitialCut();
+        invalidate();
+    }
+
+    /**
+     * 宽高比或输出尺寸变化后重新计算最小尺寸，九宫格恢复为初始区域，并按新比例重新推荐
+     */
+    private void onCutConstraintChanged() {
+        if (mBitmap == null) {
+            return;
+        }
+        mTouchFlag = 0;
+        // 按旧约束计算中的推荐作废
+        mSuggestionGeneration++;
+        mSuggestedCut = null;
+        calculateBitmapPos();
+        pushInitialCut();
+        requestSuggestion();
+        invalidate();
+    }
+
+    /**
+     * 按 翻转 -> 旋转 -> 微调角度 的顺序重新生成编辑栈
+     */
+    private void buildEditStack() {
+        mEditStack.clear();
+        if ((mFlipFlags & EditHistory.FLAG_FLIP_HORIZONTAL) != 0) {
+            mEditStack.flipHorizontal();
+        }
+        if ((mFlipFlags & EditHistory.FLAG_FLIP_VERTICAL) != 0) {
+            mEditStack.flipVertical();
+        }
+        mEditStack.rotate(mQuarterTurns);
+        mEditStack.straighten(mStraighten);
+        mEditResult = mEditStack.fuse(mSourceWidth, mSourceHeight);
+    }
+
+    /**
+     * 手势结束时记录九宫格位置，坐标相对编辑结果归一化，与屏幕尺寸无关
+     */
+    private void recordCrop() {
+        if (mTouchFlag <= 0 || mDisplayWidth <= 0 || mDisplayHeight <= 0) {
+            return;
+        }
+        float left = (mCutStartX - mBitmapLeft) / mDisplayWidth;
+        float top = (mCutStartY - mBitmapTop) / mDisplayHeight;
+        float right = (mCutStopX - mBitmapLeft) / mDisplayWidth;
+        float bottom = (mCutStopY - mBitmapTop) / mDisplayHeight;
+        if (!mHistory.isCurrent(left, top, right, bottom, mQuarterTurns, mFlipFlags, mStraighten,
+                mAspectRatio, mOutputWidth, mOutputHeight)) {
+            mHistory.push(left, top, right, bottom, mQuarterTurns, mFlipFlags, mStraighten,
+                    mAspectRatio, mOutputWidth, mOutputHeight);
+        }
+    }
+
+    /**
+     * 初始化九宫格：有可用的推荐区域时使用推荐区域，
+     * 否则为整张图像，锁定宽高比时为居中的最大区域
+     */
+    private void initCutRect() {
+        float[] cut = acceptSuggestion(mSuggestedCut);
+        if (cut != null) {
+            setCutRect(cut[0], cut[1], cut[2], cut[3]);
+        } else {
+            calculateInitialCut(mInitialCut);
+            setCutRect(mInitialCut[0], mInitialCut[1], mInitialCut[2], mInitialCut[3]);
+        }
+    }
+
+    /**
+     * [ 检查推荐区域是否符合当前的剪裁约束 ]
+     * 锁定宽高比（包括输出尺寸）时比例相差超过{@link #SUGGESTION_RATIO_TOLERANCE}的推荐不可用，
+     * 可用的推荐以中心收缩到精确的比例，导出时不会被拉伸
+     *
+     * @param cut 推荐区域，可以为null
+     * @return 可用的推荐区域，不可用时为null
+     */
+    private float[] acceptSuggestion(float[] cut) {
+        if (cut == null || cut[2] <= cut[0] || cut[3] <= cut[1]) {
+            return null;
+        }
+        float left = cut[0];
+        float top = cut[1];
+        float right = cut[2];
+        float bottom = cut[3];
+        if (mAspectRatio > 0) {
+            float width = (right - left) * mDisplayWidth;
+            float height = (bottom - top) * mDisplayHeight;
+            float ratio = width / height;
+            if (Math.abs(ratio / mAspectRatio - 1) > SUGGESTION_RATIO_TOLERANCE) {
+                return null;
+            }
+            if (ratio > mAspectRatio) {
+                float inset = (width - height * mAspectRatio) / 2 / mDisplayWidth;
+                left += inset;
+                right -= inset;
+            } else {
+                float inset = (height - width / mAspectRatio) / 2 / mDisplayHeight;
+                top += inset;
+                bottom -= inset;
+            }
+        }
+        if ((right - left) * mDisplayWidth < mMinCutWidth || (bottom - top) * mDisplayHeight < mMinCutHeight) {
+            return null;
+        }
+        return new float[]{left, top, right, bottom};
+    }
+
+    /**
+     * [ 计算没有推荐区域时的初始剪裁区域 ]
+     *
+     * @param out 归一化的 {left, top, right, bottom}
+     */
+    private void calculateInitialCut(float[] out) {
+        float width = 1;
+        float height = 1;
+        if (mAspectRatio > 0) {
+            float resultRatio = mEditResult.getWidth() / mEditResult.getHeight();
+            if (mAspectRatio > resultRatio) {
+                height = resultRatio / mAspectRatio;
+            } else {
+                width = mAspectRatio / resultRatio;
+            }
+        }
+        out[0] = (1 - width) / 2;
+        out[1] = (1 - height) / 2;
+        out[2] = out[0] + width;
+        out[3] = out[1] + height;
+    }
+
+    /**
+     * 记录初始剪裁区域、当前几何变换和剪裁约束
+     */
+    private void pushInitialCut() {
+        calculateInitialCut(mInitialCut);
+        mHistory.push(mInitialCut[0], mInitialCut[1], mInitialCut[2], mInitialCut[3],
+                mQuarterTurns, mFlipFlags, mStraighten, mAspectRatio, mOutputWidth, mOutputHeight);
+    }
+
+    /**
+     * 按归一化坐标设置九宫格位置
+     *
+     * @param left   相对编辑结果宽度 0~1
+     * @param top    相对编辑结果高度 0~1
+     * @param right  相对编辑结果宽度 0~1
+     * @param bottom 相对编辑结果高度 0~1
+     */
+    private void setCutRect(float left, float top, float right, float bottom) {
+        mCutStartX = mBitmapLeft + left * mDisplayWidth;
+        mCutStartY = mBitmapTop + top * mDisplayHeight;
+        mCutStopX = mBitmapLeft + right * mDisplayWidth;
+        mCutStopY = mBitmapTop + bottom * mDisplayHeight;
+        mCutWidth = mCutStopX - mCutStartX;
+        mCutHeight = mCutStopY - mCutStartY;
+    }
+
+    /**
+     * 在后台线程根据图像内容计算推荐的初始剪裁区域，完成后在首次触摸前生效
+     */
+    private void requestSuggestion() {
+        final Bitmap bitmap = mBitmap;
+        final int generation = mSuggestionGeneration;
+        // 锁定宽高比时只推荐该比例
+        final float[] aspectRatios = mAspectRatio > 0 ? new float[]{mAspectRatio} : mSuggestAspectRatios;
+        if (bitmap == null || aspectRatios.length == 0) {
+            return;
+        }
+        sSuggestExecutor.execute(() -> {
+            final float[] cut = suggestCut(bitmap, aspectRatios);
+            post(() -> applySuggestion(generation, cut));
+        });
+    }
+
+    /**
+     * [ 在主线程应用推荐结果 ]
+     *
+     * @param generation 请求推荐时的版本号
+     * @param cut        推荐区域
+     */
+    @VisibleForTesting
+    void applySuggestion(int generation, float[] cut) {
+        // 图像或剪裁约束已变化、已被触摸或已有几何变换时丢弃
+        if (generation != mSuggestionGeneration || mTouchFlag != 0 || mEditStack.getOperations().size() > 0) {
+            return;
+        }
+        mSuggestedCut = acceptSuggestion(cut);
+        if (mSuggestedCut != null) {
+            // 推荐区域替换初始记录，首次撤销不会回到整张图像
+            mHistory.replace(mSuggestedCut[0], mSuggestedCut[1], mSuggestedCut[2], mSuggestedCut[3],
+                    mQuarterTurns, mFlipFlags, mStraighten, mAspectRatio, mOutputWidth, mOutputHeight);
+        }
+        invalidate();
+    }
+
+    @VisibleForTesting
+    int getSuggestionGeneration() {
+        return mSuggestionGeneration;
+    }
+
+    /**
+     * [ 缩小预览图后计算推荐剪裁区域，在后台线程调用 ]
+     *
+     * @param bitmap       预览图
+     * @param aspectRatios 候选宽高比
+     * @return 归一化的 {left, top, right, bottom}
+     */
+    private static float[] suggestCut(Bitmap bitmap, float[] aspectRatios) {
+        float scale = Math.min(1f, (float) CropSuggester.MAX_SIDE / Math.max(bitmap.getWidth(), bitmap.getHeight()));
+        int width = Math.max(1, Math.round(bitmap.getWidth() * scale));
+        int height = Math.max(1, Math.round(bitmap.getHeight() * scale));
+        Bitmap small = scale < 1 ? Bitmap.createScaledBitmap(bitmap, width, height, true) : bitmap;
+        int[] pixels = new int[width * height];
+        small.getPixels(pixels, 0, width, 0, 0, width, height);
+        if (small != bitmap) {
+            small.recycle();
+        }
+        return CropSuggester.suggest(pixels, width, height, aspectRatios);
+    }
+
+    /**
+     * 恢复历史中的当前记录，只重新计算矩阵并重绘
+     */
+    private void restoreHistory() {
+        mQuarterTurns = mHistory.getQuarterTurns();
+        mFlipFlags = mHistory.getFlipFlags();
+        mStraighten = mHistory.getStraighten();
+        // 宽高比和输出尺寸随记录恢复，否则撤销后的剪裁会被拉伸到当前的输出尺寸
+        mAspectRatio = mHistory.getAspectRatio();
+        mOutputWidth = mHistory.getOutputWidth();
+        mOutputHeight = mHistory.getOutputHeight();
+        buildEditStack();
+        calculateBitmapPos();
+
+        setCutRect(mHistory.getLeft(), mHistory.getTop(), mHistory.getRight(), mHistory.getBottom());
+        // 九宫格已恢复，不再由onDraw重置为整张图像
+        mTouchFlag = -1;
+        invalidate();
+    }
+
+    /**
+     * 计算绘制图像的矩阵、起始位置及left、top、right、bottom值
      */
     private void calculateBitmapPos() {
+        if (mBitmap == null) {
+            return;
+        }
+        EditResult result = mEditResult;
+
+        // 计算缩放比，使编辑结果宽铺满或高铺满
+        mScale = mAvailableScreenWidth / result.getWidth();
+        // 如果缩放之后高大于屏幕可用高度，则以高为基准计算缩放比
+        if (mScale * result.getHeight() > mAvailableScreenHeight) {
+            mScale = mAvailableScreenHeight / result.getHeight();
+        }
+        mDisplayWidth = result.getWidth() * mScale;
+        mDisplayHeight = result.getHeight() * mScale;
+
         // 计算绘制图片的起始x，y值
-        mDrawBitmapStartX = (mAvailableScreenWidth - mBitmap.getWidth()) / 2;
-        mDrawBitmapStartY = (mAvailableScreenHeight - mBitmap.getHeight()) / 2;
+        mDrawBitmapStartX = (mAvailableScreenWidth - mDisplayWidth) / 2;
+        mDrawBitmapStartY = (mAvailableScreenHeight - mDisplayHeight) / 2;
+
+        // 预览图坐标 -> 原图坐标 -> 编辑结果坐标 -> 屏幕坐标，一次绘制完成
+        mDrawMatrix.setScale((float) mSourceWidth / mBitmap.getWidth(), (float) mSourceHeight / mBitmap.getHeight());
+        mDrawMatrix.postConcat(result.getMatrix());
+        mDrawMatrix.postScale(mScale, mScale);
+        mDrawMatrix.postTranslate(mDrawBitmapStartX, mDrawBitmapStartY);
 
         // 计算图片的left/top/right/bottom值
         mBitmapLeft = mDrawBitmapStartX;
         mBitmapTop = mDrawBitmapStartY;
-        mBitmapRight = mDrawBitmapStartX + mBitmap.getWidth();
-        mBitmapBottom = mDrawBitmapStartY + mBitmap.getHeight();
+        mBitmapRight = mDrawBitmapStartX + mDisplayWidth;
+        mBitmapBottom = mDrawBitmapStartY + mDisplayHeight;
+        mBitmapBounds[CropConstraintSolver.LEFT] = mBitmapLeft;
+        mBitmapBounds[CropConstraintSolver.TOP] = mBitmapTop;
+        mBitmapBounds[CropConstraintSolver.RIGHT] = mBitmapRight;
+        mBitmapBounds[CropConstraintSolver.BOTTOM] = mBitmapBottom;
+        calculateMinCutSize();
     }
 
     /**
-     * 缩放处理图片，使之充满整个View|宽铺满或高铺满
+     * 由原图像素计算九宫格在屏幕上的最小宽高
+     * 设置了输出尺寸时最小为输出尺寸，保证导出时不需要放大；锁定宽高比时最小尺寸也保持该比例
+     */
+    private void calculateMinCutSize() {
+        float minWidth = (mOutputWidth > 0 ? mOutputWidth : MIN_CUT_SOURCE_PIXELS) * mScale;
+        float minHeight = (mOutputHeight > 0 ? mOutputHeight : MIN_CUT_SOURCE_PIXELS) * mScale;
+        minWidth = Math.max(minWidth, MIN_CUT_TOUCH_SIZE);
+        minHeight = Math.max(minHeight, MIN_CUT_TOUCH_SIZE);
+        if (mAspectRatio > 0) {
+            minWidth = Math.max(minWidth, minHeight * mAspectRatio);
+            minHeight = minWidth / mAspectRatio;
+        }
+        // 图像比最小尺寸还小时只能选择整个图像
+        float scale = Math.min(1, Math.min(mDisplayWidth / minWidth, mDisplayHeight / minHeight));
+        mMinCutWidth = minWidth * scale;
+        mMinCutHeight = minHeight * scale;
+    }
+
+    /**
+     * 计算屏幕可用宽高，图像的缩放由绘制矩阵完成，不再生成缩放后的bitmap
      *
      * @param context context
+     * @param height  标题栏的高度
      */
-    private void scaleBitmap(Context context, int height) {
+    private void calculateAvailableSize(Context context, int height) {
         // 计算屏幕可用宽高
         WindowManager windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
         if (windowManager != null) {
@@ -529,22 +1057,6 @@ public class PictureCutView extends View {
             mAvailableScreenWidth = metrics.widthPixels;
             mAvailableScreenHeight = metrics.heightPixels - getStatusBarHeight(context) - height;
         }
-
-        // 获取bitmap的宽高
-        float bitmapWidth = mBitmap.getWidth();
-        float bitmapHeight = mBitmap.getHeight();
-
-        // 计算缩放比
-        float scale = mAvailableScreenWidth / bitmapWidth;
-        // 如果bitmap缩放之后高大于屏幕可用高度，则以高为基准计算缩放比
-        if (scale * bitmapHeight > mAvailableScreenHeight) {
-            scale = mAvailableScreenHeight / bitmapHeight;
-        }
-
-        // 缩放bitmap
-        Matrix matrix = new Matrix();
-        matrix.postScale(scale, scale);
-        mBitmap = Bitmap.createBitmap(mBitmap, 0, 0, mBitmap.getWidth(), mBitmap.getHeight(), matrix, true);
     }
 
     /**
@@ -568,6 +1080,7 @@ public class PictureCutView extends View {
         // 初始化画笔
         mPaint = new Paint();
         mPaint.setAntiAlias(true);  // 抗锯齿
+        mPaint.setFilterBitmap(true);   // 缩放图像时双线性过滤
         mPaint.setColor(Color.WHITE);   // 画笔颜色为白色
         mPaint.setStyle(Paint.Style.STROKE);    // 画笔样式为线条
         mPaint.setStrokeWidth(1);   // 画笔线条宽度为1
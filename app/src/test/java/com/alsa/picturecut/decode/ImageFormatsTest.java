@@ -0,0 +1,42 @@
+package com.alsa.picturecut.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ImageFormatsTest [ 文件头识别格式的单元测试 ]
+ */
+public class ImageFormatsTest {
+
+    @Test
+    public void sniff_recognizesMagicBytes() {
+        assertEquals(ImageFormats.JPEG, sniff(0xff, 0xd8, 0xff, 0xe0));
+        assertEquals(ImageFormats.PNG, sniff(0x89, 'P', 'N', 'G', 0x0d, 0x0a, 0x1a, 0x0a));
+        assertEquals(ImageFormats.WEBP, sniff('R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P', 'V', 'P', '8', ' '));
+        assertEquals(ImageFormats.HEIF, sniff(0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'h', 'e', 'i', 'c'));
+        assertEquals(ImageFormats.HEIF, sniff(0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'm', 'i', 'f', '1'));
+        assertEquals(ImageFormats.GIF, sniff('G', 'I', 'F', '8', '9', 'a'));
+        assertEquals(ImageFormats.BMP, sniff('B', 'M', 0, 0));
+    }
+
+    @Test
+    public void sniff_rejectsOtherAndTruncatedHeaders() {
+        // MP4视频同为ISO BMFF，但品牌不是HEIF
+        assertEquals(ImageFormats.UNKNOWN, sniff(0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm'));
+        // RIFF但不是WebP
+        assertEquals(ImageFormats.UNKNOWN, sniff('R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'A', 'V', 'E'));
+        // 文件头不完整
+        assertEquals(ImageFormats.UNKNOWN, sniff(0x89, 'P', 'N', 'G'));
+        assertEquals(ImageFormats.UNKNOWN, sniff(0xff, 0xd8));
+        assertEquals(ImageFormats.UNKNOWN, sniff());
+    }
+
+    private static int sniff(int... bytes) {
+        byte[] header = new byte[ImageFormats.HEADER_LENGTH];
+        for (int i = 0; i < bytes.length; i++) {
+            header[i] = (byte) bytes[i];
+        }
+        return ImageFormats.sniff(header, bytes.length);
+    }
+}
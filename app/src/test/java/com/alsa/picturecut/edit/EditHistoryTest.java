@@ -0,0 +1,158 @@
+package com.alsa.picturecut.edit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EditHistoryTest [ 撤销/重做环形缓冲区的单元测试 ]
+ */
+public class EditHistoryTest {
+    private static final float DELTA = 0;
+
+    @Test
+    public void empty_cannotUndoOrRedo() {
+        EditHistory history = new EditHistory(4);
+        assertFalse(history.canUndo());
+        assertFalse(history.canRedo());
+        assertFalse(history.undo());
+        assertFalse(history.redo());
+        assertFalse(history.isCurrent(0, 0, 1, 1, 0, 0, 0, 0, 0, 0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void empty_getThrows() {
+        new EditHistory(4).getLeft();
+    }
+
+    @Test
+    public void undoRedo_stopAtBothEnds() {
+        EditHistory history = new EditHistory(4);
+        push(history, 0);
+        // 只有初始记录时不能撤销
+        assertFalse(history.undo());
+        push(history, 1);
+        push(history, 2);
+
+        assertTrue(history.undo());
+        assertStep(history, 1);
+        assertTrue(history.undo());
+        assertStep(history, 0);
+        assertFalse(history.undo());
+        assertStep(history, 0);
+
+        assertTrue(history.redo());
+        assertTrue(history.redo());
+        assertStep(history, 2);
+        assertFalse(history.redo());
+        assertStep(history, 2);
+    }
+
+    @Test
+    public void pushAfterUndo_discardsRedo() {
+        EditHistory history = new EditHistory(4);
+        push(history, 0);
+        push(history, 1);
+        push(history, 2);
+        history.undo();
+        history.undo();
+        push(history, 5);
+
+        assertFalse(history.canRedo());
+        assertStep(history, 5);
+        assertTrue(history.undo());
+        assertStep(history, 0);
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void pushBeyondCapacity_dropsOldest() {
+        EditHistory history = new EditHistory(3);
+        for (int i = 0; i < 5; i++) {
+            push(history, i);
+        }
+        assertStep(history, 4);
+        assertTrue(history.undo());
+        assertStep(history, 3);
+        assertTrue(history.undo());
+        assertStep(history, 2);
+        // 0和1已被覆盖
+        assertFalse(history.undo());
+
+        // 绕回后撤销再记录，仍按顺序保留
+        push(history, 7);
+        assertStep(history, 7);
+        assertTrue(history.undo());
+        assertStep(history, 2);
+        assertTrue(history.redo());
+        assertStep(history, 7);
+        assertFalse(history.canRedo());
+    }
+
+    @Test
+    public void clear_resetsWrappedBuffer() {
+        EditHistory history = new EditHistory(2);
+        for (int i = 0; i < 3; i++) {
+            push(history, i);
+        }
+        history.clear();
+        assertFalse(history.canUndo());
+        push(history, 8);
+        assertStep(history, 8);
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void replace_overwritesCurrentWithoutNewStep() {
+        EditHistory history = new EditHistory(4);
+        // 没有记录时等同于push
+        history.replace(0, 0.1f, 0.2f, 0.3f, 0, 0, 0, 0, 0, 0);
+        assertStep(history, 0);
+        history.replace(3, 3.1f, 3.2f, 3.3f, 3, 0, 30, 3, 30, 10);
+        assertStep(history, 3);
+        assertFalse(history.canUndo());
+
+        push(history, 1);
+        assertTrue(history.undo());
+        assertStep(history, 3);
+    }
+
+    @Test
+    public void isCurrent_comparesAllFields() {
+        EditHistory history = new EditHistory(4);
+        int flip = EditHistory.FLAG_FLIP_HORIZONTAL;
+        history.push(0.1f, 0.2f, 0.8f, 0.9f, 1, flip, 5, 1, 1080, 1080);
+        assertTrue(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 1, flip, 5, 1, 1080, 1080));
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 2, flip, 5, 1, 1080, 1080));
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 1, 0, 5, 1, 1080, 1080));
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 1, flip, 0, 1, 1080, 1080));
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.7f, 0.9f, 1, flip, 5, 1, 1080, 1080));
+        // 剪裁约束不同也是不同的记录
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 1, flip, 5, 0, 0, 0));
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 1, flip, 5, 1, 540, 1080));
+        assertFalse(history.isCurrent(0.1f, 0.2f, 0.8f, 0.9f, 1, flip, 5, 1, 1080, 540));
+    }
+
+    /**
+     * 以序号生成一条各字段都不同的记录
+     */
+    private static void push(EditHistory history, int step) {
+        history.push(step, step + 0.1f, step + 0.2f, step + 0.3f, step % 4, step % 3, step * 10,
+                step, step * 10, step * 10 / 3);
+    }
+
+    private static void assertStep(EditHistory history, int step) {
+        assertEquals(step, history.getLeft(), DELTA);
+        assertEquals(step + 0.1f, history.getTop(), DELTA);
+        assertEquals(step + 0.2f, history.getRight(), DELTA);
+        assertEquals(step + 0.3f, history.getBottom(), DELTA);
+        assertEquals(step % 4, history.getQuarterTurns());
+        assertEquals(step % 3, history.getFlipFlags());
+        assertEquals(step * 10, history.getStraighten(), DELTA);
+        assertEquals(step, history.getAspectRatio(), DELTA);
+        assertEquals(step * 10, history.getOutputWidth());
+        assertEquals(step * 10 / 3, history.getOutputHeight());
+    }
+}
@@ -0,0 +1,156 @@
+package com.alsa.picturecut.edit;
+
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EditStackTest [ 编辑栈融合结果的单元测试，校验各操作下原图角点的映射 ]
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class EditStackTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+
+    private static final float DELTA = 0.01f;
+
+    @Test
+    public void empty_isIdentity() {
+        EditResult result = new EditStack().fuse(WIDTH, HEIGHT);
+        assertSize(result, WIDTH, HEIGHT);
+        assertMaps(result, 0, 0, 0, 0);
+        assertMaps(result, WIDTH, HEIGHT, WIDTH, HEIGHT);
+        assertEquals(1, result.getMaxScale(), DELTA);
+    }
+
+    @Test
+    public void crop_translatesToOrigin() {
+        EditStack stack = new EditStack();
+        stack.crop(new RectF(100, 50, 300, 250));
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, 200, 200);
+        assertMaps(result, 100, 50, 0, 0);
+        assertMaps(result, 300, 250, 200, 200);
+        assertEquals(new Rect(100, 50, 300, 250), result.getSourceBounds(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void crop_clampedToImage() {
+        EditStack stack = new EditStack();
+        stack.crop(new RectF(-50, -50, 200, 100));
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, 200, 100);
+        assertMaps(result, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void rotate_mapsCornersClockwise() {
+        EditStack stack = new EditStack();
+        stack.rotate(1);
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, HEIGHT, WIDTH);
+        // 左上 -> 右上，右上 -> 右下，左下 -> 左上
+        assertMaps(result, 0, 0, HEIGHT, 0);
+        assertMaps(result, WIDTH, 0, HEIGHT, WIDTH);
+        assertMaps(result, 0, HEIGHT, 0, 0);
+        assertEquals(1, result.getMaxScale(), DELTA);
+
+        stack.rotate(1);
+        result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, WIDTH, HEIGHT);
+        assertMaps(result, 0, 0, WIDTH, HEIGHT);
+        assertEquals(1, stack.getOperations().size());
+    }
+
+    @Test
+    public void rotate_fullTurnCancels() {
+        EditStack stack = new EditStack();
+        stack.rotate(1);
+        stack.rotate(3);
+        assertEquals(0, stack.getOperations().size());
+    }
+
+    @Test
+    public void flip_mirrorsAndCancels() {
+        EditStack stack = new EditStack();
+        stack.flipHorizontal();
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertMaps(result, 0, 0, WIDTH, 0);
+        assertMaps(result, WIDTH, HEIGHT, 0, HEIGHT);
+
+        stack.flipVertical();
+        result = stack.fuse(WIDTH, HEIGHT);
+        assertMaps(result, 0, 0, WIDTH, HEIGHT);
+
+        stack.flipVertical();
+        stack.flipHorizontal();
+        assertEquals(0, stack.getOperations().size());
+    }
+
+    @Test
+    public void straighten_fillsOutputWithSource() {
+        EditStack stack = new EditStack();
+        stack.straighten(10);
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, WIDTH, HEIGHT);
+        assertTrue(result.getMaxScale() > 1);
+        // 输出的四个角反向映射后都在原图内，画面没有空白
+        Matrix inverse = new Matrix();
+        assertTrue(result.getMatrix().invert(inverse));
+        float[] corners = {0, 0, WIDTH, 0, WIDTH, HEIGHT, 0, HEIGHT};
+        inverse.mapPoints(corners);
+        for (int i = 0; i < corners.length; i += 2) {
+            assertTrue("x " + corners[i], corners[i] >= -DELTA && corners[i] <= WIDTH + DELTA);
+            assertTrue("y " + corners[i + 1], corners[i + 1] >= -DELTA && corners[i + 1] <= HEIGHT + DELTA);
+        }
+        // 中心不动
+        assertMaps(result, WIDTH / 2f, HEIGHT / 2f, WIDTH / 2f, HEIGHT / 2f);
+    }
+
+    @Test
+    public void resize_scalesCropToOutput() {
+        EditStack stack = new EditStack();
+        stack.crop(new RectF(100, 50, 300, 250));
+        stack.resize(50, 50);
+        stack.resize(100, 100);
+        assertEquals(2, stack.getOperations().size());
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, 100, 100);
+        assertMaps(result, 300, 250, 100, 100);
+        assertEquals(0.5f, result.getMaxScale(), DELTA);
+        assertEquals(new Rect(100, 50, 300, 250), result.getSourceBounds(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void cropAfterRotate_usesRotatedCoordinates() {
+        EditStack stack = new EditStack();
+        stack.rotate(1);
+        // 旋转后宽300高400，剪裁上半部分对应原图左半部分
+        stack.crop(new RectF(0, 0, HEIGHT, WIDTH / 2f));
+        EditResult result = stack.fuse(WIDTH, HEIGHT);
+        assertSize(result, HEIGHT, WIDTH / 2f);
+        assertEquals(new Rect(0, 0, WIDTH / 2, HEIGHT), result.getSourceBounds(WIDTH, HEIGHT));
+        assertMaps(result, 0, HEIGHT, 0, 0);
+    }
+
+    private static void assertSize(EditResult result, float width, float height) {
+        assertEquals("width", width, result.getWidth(), DELTA);
+        assertEquals("height", height, result.getHeight(), DELTA);
+    }
+
+    private static void assertMaps(EditResult result, float x, float y, float expectedX, float expectedY) {
+        float[] point = {x, y};
+        result.getMatrix().mapPoints(point);
+        assertEquals("(" + x + ", " + y + ") x", expectedX, point[0], DELTA);
+        assertEquals("(" + x + ", " + y + ") y", expectedY, point[1], DELTA);
+    }
+}
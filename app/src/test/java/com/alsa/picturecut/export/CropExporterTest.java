@@ -0,0 +1,146 @@
+package com.alsa.picturecut.export;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.alsa.picturecut.decode.ImageFormats;
+import com.alsa.picturecut.decode.RegionDecoder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CropExporterTest [ 分条解码及映射路径选择的单元测试 ]
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class CropExporterTest {
+    private static final File TMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+    @Test
+    public void decodeStrips_narrowStripRepeatsEdgeInsteadOfStalePixels() throws IOException {
+        // 300行分两条，第二条解码结果比映射窄一个像素
+        int width = 4;
+        int height = 300;
+        StripDecoder decoder = new StripDecoder(width, height);
+        try (MappedImage image = MappedImage.create(TMP_DIR, width, height)) {
+            CropExporter.decodeStrips(decoder, new Rect(0, 0, width, height), 1, image);
+            assertEquals(2, decoder.mStrips);
+            assertEquals(StripDecoder.color(0, 3), image.getPixel(3, 0));
+            assertEquals(StripDecoder.color(1, 2), image.getPixel(2, 256));
+            assertEquals(StripDecoder.color(1, 2), image.getPixel(3, 256));
+            assertEquals(StripDecoder.color(1, 2), image.getPixel(3, height - 1));
+        }
+    }
+
+    @Test
+    public void decodeStrips_shortStripRepeatsLastRow() throws IOException {
+        // 采样后向下取整，第二条比映射少一行
+        int width = 4;
+        int height = 300;
+        StripDecoder decoder = new StripDecoder(width, height);
+        decoder.mShort = true;
+        try (MappedImage image = MappedImage.create(TMP_DIR, width, height)) {
+            CropExporter.decodeStrips(decoder, new Rect(0, 0, width, height), 1, image);
+            assertEquals(StripDecoder.color(1, 0), image.getPixel(0, height - 2));
+            assertEquals(StripDecoder.color(1, 0), image.getPixel(0, height - 1));
+            assertEquals(StripDecoder.color(1, 3), image.getPixel(3, height - 1));
+        }
+    }
+
+    @Test
+    public void decodeStrips_scalesCoarserStripToMapping() throws IOException {
+        // 解码器内存不足时返回一半分辨率的条，每条仍填满映射中对应的行
+        int width = 8;
+        int height = 300;
+        StripDecoder decoder = new StripDecoder(width, height);
+        decoder.mCoarser = true;
+        try (MappedImage image = MappedImage.create(TMP_DIR, width, height)) {
+            CropExporter.decodeStrips(decoder, new Rect(0, 0, width, height), 1, image);
+            assertEquals(StripDecoder.color(0, 0), image.getPixel(0, 255));
+            assertEquals(StripDecoder.color(1, 0), image.getPixel(0, 256));
+            assertEquals(StripDecoder.color(1, 0), image.getPixel(0, height - 1));
+        }
+    }
+
+    @Test
+    public void shouldMap_onlyWhenOutputFits() {
+        long limit = 1000;
+        assertFalse(CropExporter.shouldMap(limit, 0, limit));
+        assertTrue(CropExporter.shouldMap(limit + 1, limit, limit));
+        // 输出同样放不进内存时映射省不下内存
+        assertFalse(CropExporter.shouldMap(limit + 1, limit + 1, limit));
+    }
+
+    /**
+     * 每条解码为一种颜色的假解码器，第二条起比区域窄一个像素或少一行，或每条都为一半分辨率
+     */
+    private static class StripDecoder implements RegionDecoder {
+        private final int mWidth;
+        private final int mHeight;
+        private int mStrips;
+        private boolean mCoarser;
+        private boolean mShort;
+
+        StripDecoder(int width, int height) {
+            mWidth = width;
+            mHeight = height;
+        }
+
+        /**
+         * 第strip条第x列的颜色
+         */
+        static int color(int strip, int x) {
+            return 0xff000000 | strip << 8 | x;
+        }
+
+        @Override
+        public int getFormat() {
+            return ImageFormats.PNG;
+        }
+
+        @Override
+        public int getWidth() {
+            return mWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        public Bitmap decode(int sampleSize) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Bitmap decodeRegion(Rect region, int sampleSize) {
+            int strip = mStrips++;
+            int width = strip == 0 || mShort ? region.width() : region.width() - 1;
+            int height = strip == 0 || !mShort ? region.height() : region.height() - 1;
+            if (mCoarser) {
+                width = region.width() / 2;
+                height = region.height() / 2;
+            }
+            int[] pixels = new int[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = mCoarser ? color(strip, 0) : color(strip, i % width);
+            }
+            return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
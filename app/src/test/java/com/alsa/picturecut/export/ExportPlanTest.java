@@ -0,0 +1,137 @@
+package com.alsa.picturecut.export;
+
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.alsa.picturecut.edit.EditResult;
+import com.alsa.picturecut.edit.EditStack;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ExportPlanTest [ 批量导出解码计划的单元测试：共享区域、采样率、级别及映射 ]
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ExportPlanTest {
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+
+    /**
+     * 不限制内存
+     */
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    @Test
+    public void singleOutput_oneLevelAtOutputSampleSize() throws IOException {
+        ExportPlan plan = ExportPlan.create(Collections.singletonList(edit(1000, 500, 3000, 2500, 500, 500)),
+                WIDTH, HEIGHT, NO_LIMIT);
+        assertEquals(new Rect(1000, 500, 3000, 2500), plan.getRegion());
+        assertEquals(4, plan.getSampleSize());
+        assertEquals(1, plan.getLevelCount());
+        assertEquals(0, plan.getLevel(0));
+        assertEquals(500, plan.getWidth(0));
+        assertFalse(plan.isMapped(0));
+        assertFalse(plan.isShared(0));
+    }
+
+    @Test
+    public void outputs_shareUnionRegionAndFinestSampleSize() throws IOException {
+        // 缩略图采样率4，横幅采样率1，原分辨率剪裁采样率1
+        ExportPlan plan = ExportPlan.create(Arrays.asList(
+                edit(1000, 500, 3000, 2500, 320, 320),
+                edit(400, 600, 3601, 2401, 1920, 1080),
+                edit(800, 400, 3200, 2600, 0, 0)), WIDTH, HEIGHT, NO_LIMIT);
+        assertEquals(new Rect(400, 400, 3601, 2600), plan.getRegion());
+        assertEquals(1, plan.getSampleSize());
+        assertEquals(3, plan.getLevelCount());
+        assertEquals(2, plan.getLevel(0));
+        assertEquals(0, plan.getLevel(1));
+        assertEquals(0, plan.getLevel(2));
+        // 3201×2200 -> 1601×1100 -> 801×550，宽度向上取整
+        assertLevel(plan, 0, 3201, 2200);
+        assertLevel(plan, 1, 1601, 1100);
+        assertLevel(plan, 2, 801, 550);
+        for (int i = 0; i < plan.getLevelCount(); i++) {
+            assertFalse(plan.isMapped(i));
+            assertFalse(plan.isShared(i));
+        }
+    }
+
+    @Test
+    public void levels_matchCeilDivOfRegionAtEachSampleSize() throws IOException {
+        // 逐级向上取整减半等于一次按2^n向上取整，与映射图像按块平均的尺寸相同
+        ExportPlan plan = ExportPlan.create(Arrays.asList(
+                edit(0, 0, 1023, 777, 0, 0),
+                edit(0, 0, 1023, 777, 63, 48)), WIDTH, HEIGHT, NO_LIMIT);
+        assertEquals(5, plan.getLevelCount());
+        for (int i = 0; i < plan.getLevelCount(); i++) {
+            assertLevel(plan, i, CropExporter.ceilDiv(1023, 1 << i), CropExporter.ceilDiv(777, 1 << i));
+        }
+    }
+
+    @Test
+    public void largeRegion_mapsAndSharesLevelsThatDoNotFit() throws IOException {
+        // 共享区域2000×2000，原分辨率的输出只是其中一小块；
+        // 按2MB上限：第0、1级放不进内存，第2级起在内存中
+        long limit = 2L << 20;
+        ExportPlan plan = ExportPlan.create(Arrays.asList(
+                edit(0, 0, 2000, 2000, 200, 200),
+                edit(0, 0, 300, 300, 0, 0)), WIDTH, HEIGHT, limit);
+        assertEquals(4, plan.getLevelCount());
+        assertTrue(plan.isMapped(0));
+        assertFalse(plan.isShared(0));
+        assertTrue(plan.isMapped(1));
+        assertTrue(plan.isShared(1));
+        assertFalse(plan.isMapped(2));
+        assertFalse(plan.isShared(2));
+        assertFalse(plan.isMapped(3));
+        assertFalse(plan.isShared(3));
+    }
+
+    @Test
+    public void largeOutput_isNotMapped() throws IOException {
+        // 输出同样放不进内存时映射省不下内存，直接解码
+        ExportPlan plan = ExportPlan.create(Collections.singletonList(edit(0, 0, 2000, 2000, 0, 0)),
+                WIDTH, HEIGHT, 8L << 20);
+        assertFalse(plan.isMapped(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void outOfBounds_throws() throws IOException {
+        // 编辑结果按更大的原图计算，剪裁区域在解码器的图像之外
+        ExportPlan.create(Collections.singletonList(edit(3000, 0, 3500, 500, 0, 0)),
+                WIDTH / 2, HEIGHT / 2, NO_LIMIT);
+    }
+
+    /**
+     * [ 剪裁并可选缩放到输出尺寸 ]
+     *
+     * @param width  输出宽，0为原分辨率
+     * @param height 输出高，0为原分辨率
+     */
+    private static EditResult edit(float left, float top, float right, float bottom, int width, int height) {
+        EditStack stack = new EditStack();
+        stack.crop(new RectF(left, top, right, bottom));
+        if (width > 0 && height > 0) {
+            stack.resize(width, height);
+        }
+        return stack.fuse(WIDTH, HEIGHT);
+    }
+
+    private static void assertLevel(ExportPlan plan, int level, int width, int height) {
+        assertEquals("level " + level + " width", width, plan.getWidth(level));
+        assertEquals("level " + level + " height", height, plan.getHeight(level));
+    }
+}
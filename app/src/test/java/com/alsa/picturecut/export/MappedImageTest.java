@@ -0,0 +1,80 @@
+package com.alsa.picturecut.export;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * MappedImageTest [ 内存映射图像的单元测试 ]
+ */
+public class MappedImageTest {
+    private static final File TMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+    @Test
+    public void setRows_readBackFromMapping() throws IOException {
+        try (MappedImage image = MappedImage.create(TMP_DIR, 3, 4)) {
+            int[] rows = {
+                    1, 2, 3,
+                    4, 5, 6
+            };
+            image.setRows(2, rows, 2);
+            assertEquals(0, image.getPixel(2, 1));
+            assertEquals(1, image.getPixel(0, 2));
+            assertEquals(6, image.getPixel(2, 3));
+        }
+    }
+
+    @Test
+    public void create_leavesNoScratchFile() throws IOException {
+        File dir = new File(TMP_DIR, "mapped-image-test");
+        dir.mkdirs();
+        try (MappedImage image = MappedImage.create(dir, 16, 16)) {
+            image.setRows(0, new int[16], 1);
+            // 映射后临时文件已删除，映射仍可读写
+            assertEquals(0, dir.list().length);
+            assertEquals(0, image.getPixel(15, 0));
+        } finally {
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void sample_interpolatesEachChannel() throws IOException {
+        try (MappedImage image = MappedImage.create(TMP_DIR, 2, 2)) {
+            image.setRows(0, new int[]{
+                    0xff000000, 0xff0000ff,
+                    0xffff0000, 0xffff00ff
+            }, 2);
+            assertEquals(0xff000000, image.sample(0, 0));
+            // 四个像素中心的平均值
+            assertEquals(0xff800080, image.sample(0.5f, 0.5f));
+            // 超出范围取边缘像素
+            assertEquals(0xffff00ff, image.sample(5, 5));
+            assertEquals(0xff000000, image.sample(-1, -1));
+        }
+    }
+
+    @Test
+    public void reduceRow_averagesBlocksAndClipsEdges() throws IOException {
+        try (MappedImage image = MappedImage.create(TMP_DIR, 3, 3)) {
+            image.setRows(0, new int[]{
+                    0xff000000, 0xff0000ff, 0xff00ff00,
+                    0xffff0000, 0xffff00ff, 0xff00ff00,
+                    0x00000000, 0x00000000, 0xff0000ff
+            }, 3);
+            int[] row = new int[2];
+            image.reduceRow(2, 0, row);
+            // 完整的2×2块取四个像素的平均值
+            assertEquals(0xff800080, row[0]);
+            // 右边缘只剩一列
+            assertEquals(0xff00ff00, row[1]);
+            image.reduceRow(2, 1, row);
+            // 下边缘只剩一行，透明度也参与平均
+            assertEquals(0x00000000, row[0]);
+            assertEquals(0xff0000ff, row[1]);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.alsa.picturecut.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * HistogramTest [ 直方图分桶、溢出及并发记录的单元测试 ]
+ */
+public class HistogramTest {
+
+    @Test
+    public void smallValues_haveExactBuckets() {
+        for (int value = 0; value < 16; value++) {
+            assertEquals(value, Histogram.getBucketIndex(value));
+            assertEquals(value, Histogram.getBucketLowerBound(value));
+        }
+        // 16开始每个桶宽2，32开始宽4
+        assertEquals(16, Histogram.getBucketIndex(17));
+        assertEquals(23, Histogram.getBucketIndex(31));
+        assertEquals(24, Histogram.getBucketIndex(32));
+        assertEquals(24, Histogram.getBucketIndex(35));
+        assertEquals(25, Histogram.getBucketIndex(36));
+    }
+
+    @Test
+    public void bucketBoundaries_roundTrip() {
+        for (int index = 0; index < Histogram.BUCKET_COUNT; index++) {
+            long lower = Histogram.getBucketLowerBound(index);
+            assertEquals("lower bound of " + index, index, Histogram.getBucketIndex(lower));
+            if (index > 0) {
+                // 下界减一落在前一个桶，桶之间没有空隙
+                assertEquals("below " + index, index - 1, Histogram.getBucketIndex(lower - 1));
+            }
+        }
+        for (int shift = 3; shift < 63; shift++) {
+            long power = 1L << shift;
+            assertEquals(power, Histogram.getBucketLowerBound(Histogram.getBucketIndex(power)));
+            // 相对误差不超过12.5%
+            long upper = power * 2 - 1;
+            long lower = Histogram.getBucketLowerBound(Histogram.getBucketIndex(upper));
+            assertTrue("error at " + upper, (upper - lower) * 8 < upper);
+        }
+    }
+
+    @Test
+    public void overflow_lastBucketAndSaturatedSum() {
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.getBucketIndex(Long.MAX_VALUE));
+
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(Long.MAX_VALUE, snapshot.getSum());
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        // 负数按0记录
+        assertEquals(0, snapshot.getPercentile(0));
+        assertEquals(Histogram.getBucketLowerBound(Histogram.BUCKET_COUNT - 1), snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void percentile_returnsBucketLowerBound() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.snapshot().getPercentile(50));
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(5050, snapshot.getSum());
+        assertEquals(50.5, snapshot.getMean(), 0);
+        assertEquals(1, snapshot.getPercentile(0));
+        assertEquals(48, snapshot.getPercentile(50));
+        // 不超过最大值
+        assertEquals(96, snapshot.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void concurrentRecord_countsEveryValue() throws InterruptedException {
+        final int threads = 8;
+        final int perThread = 20000;
+        final Histogram histogram = new Histogram();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(i % 1000 + offset);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long expectedSum = 0;
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                expectedSum += i % 1000 + t;
+            }
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threads * perThread, snapshot.getCount());
+        assertEquals(expectedSum, snapshot.getSum());
+        assertEquals(999 + threads - 1, snapshot.getMax());
+        // 所有桶的计数之和等于总数，最大值所在的桶即为100%分位
+        assertEquals(Histogram.getBucketLowerBound(Histogram.getBucketIndex(999 + threads - 1)),
+                snapshot.getPercentile(100));
+    }
+}
@@ -0,0 +1,92 @@
+package com.alsa.picturecut.suggest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CropSuggesterTest [ 推荐剪裁区域的单元测试 ]
+ */
+public class CropSuggesterTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @Test
+    public void energyTable_sumsEdgeEnergy() {
+        // 左黑右白，只有x=99和x=100两列有能量，每个像素255
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i % WIDTH < 100 ? 0xff000000 : 0xffffffff;
+        }
+        long[] table = CropSuggester.buildEnergyTable(pixels, WIDTH, HEIGHT);
+        int stride = WIDTH + 1;
+        assertEquals(2L * 255 * HEIGHT, table[HEIGHT * stride + WIDTH]);
+        // 左半边只包含x=99一列
+        assertEquals(255L * HEIGHT, table[HEIGHT * stride + 100]);
+        // 任意矩形用4次查表：x 90~110, y 10~40
+        long rect = table[40 * stride + 110] - table[10 * stride + 110] - table[40 * stride + 90] + table[10 * stride + 90];
+        assertEquals(2L * 255 * 30, rect);
+    }
+
+    @Test
+    public void flatImage_keepsWholeImage() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        float[] rect = CropSuggester.suggest(pixels, WIDTH, HEIGHT, new float[]{CropSuggester.ORIGINAL, 1});
+        assertArrayEquals(new float[]{0, 0, 1, 1}, rect, 0);
+    }
+
+    @Test
+    public void flatImage_lockedRatioReturnsCenteredMaximum() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        float[] rect = CropSuggester.suggest(pixels, WIDTH, HEIGHT, new float[]{1});
+        assertArrayEquals(new float[]{0.125f, 0, 0.875f, 1}, rect, 0.0001f);
+        rect = CropSuggester.suggest(pixels, WIDTH, HEIGHT, new float[]{2});
+        assertArrayEquals(new float[]{0, 1f / 6, 1, 5f / 6}, rect, 0.0001f);
+    }
+
+    @Test
+    public void texturedCorner_isInsideSuggestion() {
+        // 右下角有纹理，其余为纯色
+        int[] pixels = checkerboard(140, 100, WIDTH, HEIGHT);
+        float[] rect = CropSuggester.suggest(pixels, WIDTH, HEIGHT, new float[]{CropSuggester.ORIGINAL});
+        assertTrue(rect[0] * WIDTH <= 140 && rect[1] * HEIGHT <= 100);
+        assertEquals(1, rect[2], 0.01f);
+        assertEquals(1, rect[3], 0.01f);
+        // 比整张图像小
+        assertTrue(rect[0] > 0 || rect[1] > 0);
+    }
+
+    @Test
+    public void squareRatio_returnsSquare() {
+        int[] pixels = checkerboard(0, 0, WIDTH, HEIGHT);
+        float[] rect = CropSuggester.suggest(pixels, WIDTH, HEIGHT, new float[]{1});
+        assertEquals((rect[2] - rect[0]) * WIDTH, (rect[3] - rect[1]) * HEIGHT, 1);
+    }
+
+    @Test
+    public void textureAtEdge_reachesEdgeWhenStepDoesNotDivideSpan() {
+        // 宽197高80，各尺寸正方形的宽都是偶数，位置范围都不能被步长整除，纹理只在最右5列
+        int width = 197;
+        int height = 80;
+        int[] pixels = checkerboard(width - 5, 0, width, height);
+        float[] rect = CropSuggester.suggest(pixels, width, height, new float[]{1});
+        assertEquals(1, rect[2], 0);
+    }
+
+    /**
+     * 从(left, top)到右下角为黑白棋盘格，其余为灰色
+     */
+    private static int[] checkerboard(int left, int top, int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean textured = x >= left && y >= top;
+                int gray = textured ? (((x / 4 + y / 4) & 1) == 0 ? 0 : 255) : 128;
+                pixels[y * width + x] = 0xff000000 | gray << 16 | gray << 8 | gray;
+            }
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,94 @@
+package com.alsa.picturecut.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.RectF;
+
+/**
+ * CountingCanvas [ 只统计调用次数、不实际绘制的Canvas ]
+ */
+class CountingCanvas extends Canvas {
+    /**
+     * 累计的调用次数
+     */
+    private int mOps;
+
+    int getOps() {
+        return mOps;
+    }
+
+    void reset() {
+        mOps = 0;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawLines(float[] pts, int offset, int count, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawLines(float[] pts, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawRect(RectF rect, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        mOps++;
+    }
+
+    @Override
+    public void drawColor(int color) {
+        mOps++;
+    }
+
+    @Override
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        mOps++;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        mOps++;
+        return true;
+    }
+
+    @Override
+    public int save() {
+        mOps++;
+        return 1;
+    }
+
+    @Override
+    public void restore() {
+        mOps++;
+    }
+}
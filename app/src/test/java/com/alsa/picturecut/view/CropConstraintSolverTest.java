@@ -0,0 +1,181 @@
+package com.alsa.picturecut.view;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.alsa.picturecut.view.CropConstraintSolver.BOTTOM;
+import static com.alsa.picturecut.view.CropConstraintSolver.EDGE_BOTTOM;
+import static com.alsa.picturecut.view.CropConstraintSolver.EDGE_LEFT;
+import static com.alsa.picturecut.view.CropConstraintSolver.EDGE_RIGHT;
+import static com.alsa.picturecut.view.CropConstraintSolver.EDGE_TOP;
+import static com.alsa.picturecut.view.CropConstraintSolver.LEFT;
+import static com.alsa.picturecut.view.CropConstraintSolver.RIGHT;
+import static com.alsa.picturecut.view.CropConstraintSolver.TOP;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CropConstraintSolverTest [ 随机生成九宫格和手指位置，校验约束求解的不变量 ]
+ * 种子固定，失败可复现
+ */
+public class CropConstraintSolverTest {
+    private static final long SEED = 20191228L;
+    private static final int ITERATIONS = 10000;
+    private static final float DELTA = 0.01f;
+
+    /**
+     * 八个触摸区域对应的掩码，平移单独测试
+     */
+    private static final int[] MASKS = {
+            EDGE_LEFT, EDGE_TOP, EDGE_RIGHT, EDGE_BOTTOM,
+            EDGE_LEFT | EDGE_TOP, EDGE_RIGHT | EDGE_TOP, EDGE_LEFT | EDGE_BOTTOM, EDGE_RIGHT | EDGE_BOTTOM
+    };
+
+    private static final int[] EDGES = {EDGE_LEFT, EDGE_TOP, EDGE_RIGHT, EDGE_BOTTOM};
+
+    @Test
+    public void drag_staysInBoundsAndAboveMinimum() {
+        Random random = new Random(SEED);
+        float[] bounds = new float[4];
+        float[] rect = new float[4];
+        for (int i = 0; i < ITERATIONS; i++) {
+            randomBounds(random, bounds);
+            float minWidth = random.nextFloat() * (bounds[RIGHT] - bounds[LEFT]) / 2;
+            float minHeight = random.nextFloat() * (bounds[BOTTOM] - bounds[TOP]) / 2;
+            randomRect(random, bounds, minWidth, minHeight, rect);
+            float[] before = rect.clone();
+            int mask = MASKS[random.nextInt(MASKS.length)];
+            // 手指可以在图像外
+            float x = bounds[LEFT] - 200 + random.nextFloat() * (bounds[RIGHT] - bounds[LEFT] + 400);
+            float y = bounds[TOP] - 200 + random.nextFloat() * (bounds[BOTTOM] - bounds[TOP] + 400);
+            CropConstraintSolver.drag(rect, mask, x, y, bounds, minWidth, minHeight);
+
+            String message = "iteration " + i;
+            assertInBounds(message, rect, bounds);
+            assertTrue(message + " width", rect[RIGHT] - rect[LEFT] >= minWidth - DELTA);
+            assertTrue(message + " height", rect[BOTTOM] - rect[TOP] >= minHeight - DELTA);
+            for (int edge = LEFT; edge <= BOTTOM; edge++) {
+                if ((mask & EDGES[edge]) == 0) {
+                    assertEquals(message + " fixed edge " + edge, before[edge], rect[edge], 0);
+                }
+            }
+            // 约束不冲突时，被拖动的边与手指重合
+            if ((mask & EDGE_LEFT) != 0 && x >= bounds[LEFT] && x <= before[RIGHT] - minWidth) {
+                assertEquals(message + " left", x, rect[LEFT], 0);
+            }
+            if ((mask & EDGE_RIGHT) != 0 && x <= bounds[RIGHT] && x >= before[LEFT] + minWidth) {
+                assertEquals(message + " right", x, rect[RIGHT], 0);
+            }
+            if ((mask & EDGE_TOP) != 0 && y >= bounds[TOP] && y <= before[BOTTOM] - minHeight) {
+                assertEquals(message + " top", y, rect[TOP], 0);
+            }
+            if ((mask & EDGE_BOTTOM) != 0 && y <= bounds[BOTTOM] && y >= before[TOP] + minHeight) {
+                assertEquals(message + " bottom", y, rect[BOTTOM], 0);
+            }
+
+            // 同一位置再求解一次结果不变
+            float[] solved = rect.clone();
+            CropConstraintSolver.drag(rect, mask, x, y, bounds, minWidth, minHeight);
+            assertArrayEquals(message + " idempotent", solved, rect, 0);
+        }
+    }
+
+    @Test
+    public void move_keepsSizeAndStaysInBounds() {
+        Random random = new Random(SEED);
+        float[] bounds = new float[4];
+        float[] rect = new float[4];
+        for (int i = 0; i < ITERATIONS; i++) {
+            randomBounds(random, bounds);
+            randomRect(random, bounds, 0, 0, rect);
+            float[] before = rect.clone();
+            float dx = (random.nextFloat() - 0.5f) * 2 * (bounds[RIGHT] - bounds[LEFT]);
+            float dy = (random.nextFloat() - 0.5f) * 2 * (bounds[BOTTOM] - bounds[TOP]);
+            CropConstraintSolver.move(rect, dx, dy, bounds);
+
+            String message = "iteration " + i;
+            assertInBounds(message, rect, bounds);
+            assertEquals(message + " width", before[RIGHT] - before[LEFT], rect[RIGHT] - rect[LEFT], DELTA);
+            assertEquals(message + " height", before[BOTTOM] - before[TOP], rect[BOTTOM] - rect[TOP], DELTA);
+            if (before[LEFT] + dx >= bounds[LEFT] && before[RIGHT] + dx <= bounds[RIGHT]) {
+                assertEquals(message + " dx", before[LEFT] + dx, rect[LEFT], DELTA);
+            }
+            if (before[TOP] + dy >= bounds[TOP] && before[BOTTOM] + dy <= bounds[BOTTOM]) {
+                assertEquals(message + " dy", before[TOP] + dy, rect[TOP], DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void lockAspectRatio_keepsRatioBoundsAndAnchor() {
+        Random random = new Random(SEED);
+        float[] bounds = new float[4];
+        float[] rect = new float[4];
+        for (int i = 0; i < ITERATIONS; i++) {
+            randomBounds(random, bounds);
+            float ratio = 0.25f + random.nextFloat() * 3.75f;
+            // 最小尺寸符合宽高比且不超出图像，与PictureCutView.calculateMinCutSize一致；
+            // 不小于一个像素，亚像素的尺寸在float精度下无法保持宽高比
+            float maxMinWidth = Math.min(bounds[RIGHT] - bounds[LEFT], (bounds[BOTTOM] - bounds[TOP]) * ratio) / 2;
+            float minMinWidth = Math.max(1, ratio);
+            float minWidth = minMinWidth + random.nextFloat() * (maxMinWidth - minMinWidth);
+            float minHeight = minWidth / ratio;
+            randomRect(random, bounds, minWidth, minHeight, rect);
+            int mask = MASKS[random.nextInt(MASKS.length)];
+            float x = bounds[LEFT] - 200 + random.nextFloat() * (bounds[RIGHT] - bounds[LEFT] + 400);
+            float y = bounds[TOP] - 200 + random.nextFloat() * (bounds[BOTTOM] - bounds[TOP] + 400);
+            CropConstraintSolver.drag(rect, mask, x, y, bounds, minWidth, minHeight);
+            float[] dragged = rect.clone();
+            CropConstraintSolver.lockAspectRatio(rect, mask, ratio, bounds, minWidth, minHeight);
+
+            String message = "iteration " + i;
+            float width = rect[RIGHT] - rect[LEFT];
+            float height = rect[BOTTOM] - rect[TOP];
+            assertInBounds(message, rect, bounds);
+            assertEquals(message + " ratio", ratio, width / height, ratio * 1e-3f);
+            assertTrue(message + " width", width >= minWidth - DELTA);
+            assertTrue(message + " height", height >= minHeight - DELTA);
+            // 拖动的边或角的对边保持不动
+            if ((mask & EDGE_LEFT) != 0) {
+                assertEquals(message + " right anchor", dragged[RIGHT], rect[RIGHT], 0);
+            }
+            if ((mask & EDGE_RIGHT) != 0) {
+                assertEquals(message + " left anchor", dragged[LEFT], rect[LEFT], 0);
+            }
+            if ((mask & EDGE_TOP) != 0) {
+                assertEquals(message + " bottom anchor", dragged[BOTTOM], rect[BOTTOM], 0);
+            }
+            if ((mask & EDGE_BOTTOM) != 0) {
+                assertEquals(message + " top anchor", dragged[TOP], rect[TOP], 0);
+            }
+        }
+    }
+
+    private static void randomBounds(Random random, float[] bounds) {
+        bounds[LEFT] = random.nextFloat() * 100;
+        bounds[TOP] = random.nextFloat() * 300;
+        bounds[RIGHT] = bounds[LEFT] + 100 + random.nextFloat() * 1000;
+        bounds[BOTTOM] = bounds[TOP] + 100 + random.nextFloat() * 1500;
+    }
+
+    /**
+     * [ 在图像内随机生成不小于最小尺寸的九宫格 ]
+     */
+    private static void randomRect(Random random, float[] bounds, float minWidth, float minHeight, float[] rect) {
+        float width = minWidth + random.nextFloat() * (bounds[RIGHT] - bounds[LEFT] - minWidth);
+        float height = minHeight + random.nextFloat() * (bounds[BOTTOM] - bounds[TOP] - minHeight);
+        rect[LEFT] = bounds[LEFT] + random.nextFloat() * (bounds[RIGHT] - bounds[LEFT] - width);
+        rect[TOP] = bounds[TOP] + random.nextFloat() * (bounds[BOTTOM] - bounds[TOP] - height);
+        rect[RIGHT] = rect[LEFT] + width;
+        rect[BOTTOM] = rect[TOP] + height;
+    }
+
+    private static void assertInBounds(String message, float[] rect, float[] bounds) {
+        assertTrue(message + " left " + rect[LEFT], rect[LEFT] >= bounds[LEFT] - DELTA);
+        assertTrue(message + " top " + rect[TOP], rect[TOP] >= bounds[TOP] - DELTA);
+        assertTrue(message + " right " + rect[RIGHT], rect[RIGHT] <= bounds[RIGHT] + DELTA);
+        assertTrue(message + " bottom " + rect[BOTTOM], rect[BOTTOM] <= bounds[BOTTOM] + DELTA);
+    }
+}
@@ -0,0 +1,87 @@
+package com.alsa.picturecut.view;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GestureTrace [ 录制的手势轨迹，格式见 gesture_traces.txt ]
+ */
+class GestureTrace {
+    /**
+     * 步骤类型
+     */
+    static final String DOWN = "DOWN";
+    static final String MOVE = "MOVE";
+    static final String UP = "UP";
+    static final String CANCEL = "CANCEL";
+    static final String EXPECT = "EXPECT";
+
+    final String name;
+    final List<Step> steps = new ArrayList<>();
+
+    private GestureTrace(String name) {
+        this.name = name;
+    }
+
+    /**
+     * [ 读取测试资源中的所有轨迹 ]
+     *
+     * @param resource 资源名
+     * @return 轨迹列表
+     * @throws IOException 读取失败
+     */
+    static List<GestureTrace> load(String resource) throws IOException {
+        List<GestureTrace> traces = new ArrayList<>();
+        InputStream in = GestureTrace.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("missing resource " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            GestureTrace trace = null;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if ("trace".equals(parts[0])) {
+                    trace = new GestureTrace(parts[1]);
+                    traces.add(trace);
+                    continue;
+                }
+                if (trace == null) {
+                    throw new IOException(resource + ":" + lineNumber + " step before trace");
+                }
+                float[] values = new float[parts.length - 1];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Float.parseFloat(parts[i + 1]);
+                }
+                trace.steps.add(new Step(parts[0], values, lineNumber));
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * 轨迹中的一步
+     */
+    static class Step {
+        final String action;
+        final float[] values;
+        final int line;
+
+        Step(String action, float[] values, int line) {
+            this.action = action;
+            this.values = values;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.alsa.picturecut.view;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.alsa.picturecut.edit.EditResult;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * PictureCutViewTest [ 回放录制的手势，校验九宫格的边界限制及每帧的绘制开销 ]
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class PictureCutViewTest {
+    /**
+     * 与 gesture_traces.txt 中的坐标对应
+     */
+    private static final int BITMAP_WIDTH = 1080;
+    private static final int BITMAP_HEIGHT = 1440;
+    private static final float AVAILABLE_WIDTH = 1080;
+    private static final float AVAILABLE_HEIGHT = 1920;
+
+    private static final float DELTA = 0.01f;
+
+    /**
+     * 测量分配字节数前的预热帧数
+     */
+    private static final int WARM_UP_FRAMES = 200;
+
+    private List<GestureTrace> mTraces;
+    private Properties mBaseline;
+
+    @Before
+    public void setUp() throws IOException {
+        mTraces = GestureTrace.load("gesture_traces.txt");
+        mBaseline = new Properties();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("draw_baseline.properties")) {
+            mBaseline.load(in);
+        }
+    }
+
+    @Test
+    public void replayTraces_clampsEveryTouchRegion() {
+        for (GestureTrace trace : mTraces) {
+            replay(trace, new CountingCanvas(), null);
+        }
+    }
+
+    @Test
+    public void replayTraces_drawOpsWithinBaseline() {
+        int max = Integer.parseInt(mBaseline.getProperty("draw.ops.per.frame.max"));
+        int[] worst = new int[1];
+        for (GestureTrace trace : mTraces) {
+            replay(trace, new CountingCanvas(), worst);
+        }
+        assertTrue("draw ops per frame " + worst[0] + " > baseline " + max, worst[0] <= max);
+        assertTrue("no frame drawn", worst[0] > 0);
+    }
+
+    @Test
+    public void replayTraces_allocationsWithinBaseline() {
+        AllocationCounter counter = AllocationCounter.create();
+        assumeTrue("thread allocation counting unsupported", counter != null);
+        long max = Long.parseLong(mBaseline.getProperty("alloc.bytes.per.frame.max"));
+
+        CountingCanvas canvas = new CountingCanvas();
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            for (GestureTrace trace : mTraces) {
+                replay(trace, canvas, null);
+            }
+        }
+
+        long bytes = 0;
+        int frames = 0;
+        for (GestureTrace trace : mTraces) {
+            PictureCutView view = newView();
+            long downTime = SystemClock.uptimeMillis();
+            for (GestureTrace.Step step : trace.steps) {
+                if (GestureTrace.EXPECT.equals(step.action)) {
+                    continue;
+                }
+                dispatch(view, step, downTime);
+                long start = counter.get();
+                view.onDraw(canvas);
+                bytes += counter.get() - start - counter.overhead;
+                frames++;
+            }
+        }
+        long perFrame = bytes / frames;
+        assertTrue("allocated " + perFrame + " bytes per frame > baseline " + max, perFrame <= max);
+    }
+
+    @Test
+    public void lockedAspectRatio_keepsRatioWhileDragging() {
+        PictureCutView view = newView();
+        view.setAspectRatio(1);
+        CountingCanvas canvas = new CountingCanvas();
+        view.onDraw(canvas);
+        // 初始区域为居中的最大正方形
+        assertRect(view, 0, 420, 1080, 1500);
+
+        // 拖动右下角，以变化大的一边为准，固定左上角
+        long downTime = SystemClock.uptimeMillis();
+        drag(view, downTime, 1060, 1480, 700, 1200);
+        assertRect(view, 0, 420, 780, 1200);
+
+        // 拖动右边，高度以中心缩放
+        drag(view, downTime, 770, 810, 500, 810);
+        assertRect(view, 0, 560, 500, 1060);
+
+        // 不小于最小尺寸
+        drag(view, downTime, 490, 810, 10, 810);
+        assertRect(view, 0, 660, 300, 960);
+    }
+
+    @Test
+    public void outputSize_limitsMinimumCutAndResizesResult() {
+        PictureCutView view = newView();
+        view.setOutputSize(540, 540);
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 420, 1080, 1500);
+
+        // 最小尺寸为输出尺寸的原图像素，预览缩放比为1
+        drag(view, SystemClock.uptimeMillis(), 1060, 1480, 100, 600);
+        assertRect(view, 0, 420, 540, 960);
+        assertEquals(540, view.getEditResult().getOutputWidth());
+        assertEquals(540, view.getEditResult().getOutputHeight());
+    }
+
+    @Test
+    public void undoOutputSize_restoresFreeCropWithoutStretching() {
+        PictureCutView view = newView();
+        view.onDraw(new CountingCanvas());
+        drag(view, SystemClock.uptimeMillis(), 1060, 1670, 700, 1200);
+        assertRect(view, 0, 240, 700, 1200);
+
+        view.setOutputSize(1080, 1080);
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 420, 1080, 1500);
+
+        // 撤销后恢复自由剪裁，输出尺寸随之清除，导出为剪裁区域的原图像素
+        assertTrue(view.undo());
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 240, 700, 1200);
+        assertEquals(0, view.getAspectRatio(), 0);
+        EditResult result = view.getEditResult();
+        assertEquals(700, result.getOutputWidth());
+        assertEquals(960, result.getOutputHeight());
+
+        // 重做后恢复输出尺寸
+        assertTrue(view.redo());
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 420, 1080, 1500);
+        assertEquals(1, view.getAspectRatio(), 0);
+        result = view.getEditResult();
+        assertEquals(1080, result.getOutputWidth());
+        assertEquals(1080, result.getOutputHeight());
+    }
+
+    @Test
+    public void constraintChange_discardsPendingSuggestion() {
+        PictureCutView view = newView();
+        view.onDraw(new CountingCanvas());
+        int generation = view.getSuggestionGeneration();
+        view.setAspectRatio(3f / 4);
+
+        // 按旧约束请求的推荐即使比例相同也丢弃
+        float[] cut = {0.2f, 0.2f, 0.8f, 0.8f};
+        view.applySuggestion(generation, cut);
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 240, 1080, 1680);
+
+        view.applySuggestion(view.getSuggestionGeneration(), cut);
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 216, 528, 864, 1392);
+    }
+
+    @Test
+    public void outputSize_rejectsSuggestionWithOtherRatio() {
+        PictureCutView view = newView();
+        view.setOutputSize(1080, 1080);
+        view.onDraw(new CountingCanvas());
+
+        // 纯色图像推荐旧版本返回的整张图像，导出时会被拉伸到正方形
+        view.applySuggestion(view.getSuggestionGeneration(), new float[]{0, 0, 1, 1});
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 420, 1080, 1500);
+        assertEquals(new Rect(0, 180, 1080, 1260), view.getEditResult().getSourceBounds(BITMAP_WIDTH, BITMAP_HEIGHT));
+    }
+
+    @Test
+    public void outputSize_fitsSuggestionToExactRatio() {
+        PictureCutView view = newView();
+        view.setOutputSize(540, 540);
+        view.onDraw(new CountingCanvas());
+
+        // 预览图上按整像素计算的推荐比例略有偏差，以中心收缩为正方形
+        view.applySuggestion(view.getSuggestionGeneration(), new float[]{0.1f, 0.2f, 0.9f, 0.805f});
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 108, 531.6f, 972, 1395.6f);
+    }
+
+    @Test
+    public void sampledPreview_editResultUsesSourcePixels() {
+        // 预览按2采样解码，九宫格和导出仍以原图尺寸为准
+        PictureCutView view = new PictureCutView(ApplicationProvider.getApplicationContext());
+        view.setBitmap(Bitmap.createBitmap(BITMAP_WIDTH / 2, BITMAP_HEIGHT / 2, Bitmap.Config.ARGB_8888),
+                BITMAP_WIDTH, BITMAP_HEIGHT);
+        view.setAvailableSize(AVAILABLE_WIDTH, AVAILABLE_HEIGHT);
+        view.setClickable(true);
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 240, 1080, 1680);
+        EditResult result = view.getEditResult();
+        assertEquals(BITMAP_WIDTH, result.getOutputWidth());
+        assertEquals(BITMAP_HEIGHT, result.getOutputHeight());
+
+        drag(view, SystemClock.uptimeMillis(), 1060, 1670, 700, 1200);
+        assertRect(view, 0, 240, 700, 1200);
+        result = view.getEditResult();
+        assertEquals(new Rect(0, 0, 700, 960), result.getSourceBounds(BITMAP_WIDTH, BITMAP_HEIGHT));
+        assertEquals(700, result.getOutputWidth());
+        assertEquals(960, result.getOutputHeight());
+    }
+
+    @Test
+    public void noImage_drawsAndTouchesWithoutCrash() {
+        // 解码失败时没有图像，布局、绘制和触摸都不应出错
+        PictureCutView view = new PictureCutView(ApplicationProvider.getApplicationContext());
+        view.setAvailableSize(AVAILABLE_WIDTH, AVAILABLE_HEIGHT);
+        view.setClickable(true);
+        view.rotate();
+        view.onDraw(new CountingCanvas());
+        drag(view, SystemClock.uptimeMillis(), 100, 100, 200, 200);
+        assertFalse(view.undo());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noImage_editResultThrows() {
+        new PictureCutView(ApplicationProvider.getApplicationContext()).getEditResult();
+    }
+
+    @Test
+    public void cancelledGesture_isRecordedInHistory() {
+        PictureCutView view = newView();
+        view.onDraw(new CountingCanvas());
+        long downTime = SystemClock.uptimeMillis();
+        dispatch(view, new GestureTrace.Step(GestureTrace.DOWN, new float[]{1060, 1670}, 0), downTime);
+        dispatch(view, new GestureTrace.Step(GestureTrace.MOVE, new float[]{700, 1200}, 0), downTime);
+        dispatch(view, new GestureTrace.Step(GestureTrace.CANCEL, new float[]{700, 1200}, 0), downTime);
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 240, 700, 1200);
+
+        // 取消的手势也是一步，可以撤销和重做
+        assertTrue(view.undo());
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 240, 1080, 1680);
+        assertTrue(view.redo());
+        view.onDraw(new CountingCanvas());
+        assertRect(view, 0, 240, 700, 1200);
+    }
+
+    /**
+     * [ 回放一条轨迹，每个触摸事件后绘制一帧 ]
+     *
+     * @param trace  轨迹
+     * @param canvas 统计用画布
+     * @param worst  不为null时记录单帧最大调用次数
+     */
+    private void replay(GestureTrace trace, CountingCanvas canvas, int[] worst) {
+        PictureCutView view = newView();
+        drawFrame(view, canvas, worst);
+        long downTime = SystemClock.uptimeMillis();
+        for (GestureTrace.Step step : trace.steps) {
+            if (GestureTrace.EXPECT.equals(step.action)) {
+                assertCutRect(trace, step, view);
+                continue;
+            }
+            dispatch(view, step, downTime);
+            drawFrame(view, canvas, worst);
+        }
+    }
+
+    private static void drawFrame(PictureCutView view, CountingCanvas canvas, int[] worst) {
+        canvas.reset();
+        view.onDraw(canvas);
+        if (worst != null) {
+            worst[0] = Math.max(worst[0], canvas.getOps());
+        }
+    }
+
+    private static void dispatch(PictureCutView view, GestureTrace.Step step, long downTime) {
+        int action;
+        if (GestureTrace.DOWN.equals(step.action)) {
+            action = MotionEvent.ACTION_DOWN;
+        } else if (GestureTrace.MOVE.equals(step.action)) {
+            action = MotionEvent.ACTION_MOVE;
+        } else if (GestureTrace.UP.equals(step.action)) {
+            action = MotionEvent.ACTION_UP;
+        } else if (GestureTrace.CANCEL.equals(step.action)) {
+            action = MotionEvent.ACTION_CANCEL;
+        } else {
+            throw new IllegalArgumentException("line " + step.line + ": unknown action " + step.action);
+        }
+        MotionEvent event = MotionEvent.obtain(downTime, SystemClock.uptimeMillis(), action,
+                step.values[0], step.values[1], 0);
+        view.onTouchEvent(event);
+        event.recycle();
+    }
+
+    private static void drag(PictureCutView view, long downTime, float fromX, float fromY, float toX, float toY) {
+        dispatch(view, new GestureTrace.Step(GestureTrace.DOWN, new float[]{fromX, fromY}, 0), downTime);
+        dispatch(view, new GestureTrace.Step(GestureTrace.MOVE, new float[]{toX, toY}, 0), downTime);
+        dispatch(view, new GestureTrace.Step(GestureTrace.UP, new float[]{toX, toY}, 0), downTime);
+        view.onDraw(new CountingCanvas());
+    }
+
+    private static void assertRect(PictureCutView view, float left, float top, float right, float bottom) {
+        RectF rect = view.getCutRect();
+        assertEquals("left", left, rect.left, DELTA);
+        assertEquals("top", top, rect.top, DELTA);
+        assertEquals("right", right, rect.right, DELTA);
+        assertEquals("bottom", bottom, rect.bottom, DELTA);
+        float[] size = view.getCutSize();
+        assertEquals("width", right - left, size[0], DELTA);
+        assertEquals("height", bottom - top, size[1], DELTA);
+    }
+
+    private static void assertCutRect(GestureTrace trace, GestureTrace.Step step, PictureCutView view) {
+        String message = trace.name + " line " + step.line;
+        RectF rect = view.getCutRect();
+        assertEquals(message + " left", step.values[0], rect.left, DELTA);
+        assertEquals(message + " top", step.values[1], rect.top, DELTA);
+        assertEquals(message + " right", step.values[2], rect.right, DELTA);
+        assertEquals(message + " bottom", step.values[3], rect.bottom, DELTA);
+        // 宽高必须与位置一致，否则下次触摸的区域判断会出错
+        float[] size = view.getCutSize();
+        assertEquals(message + " width", rect.right - rect.left, size[0], DELTA);
+        assertEquals(message + " height", rect.bottom - rect.top, size[1], DELTA);
+    }
+
+    private static PictureCutView newView() {
+        Context context = ApplicationProvider.getApplicationContext();
+        PictureCutView view = new PictureCutView(context);
+        view.setBitmap(Bitmap.createBitmap(BITMAP_WIDTH, BITMAP_HEIGHT, Bitmap.Config.ARGB_8888),
+                BITMAP_WIDTH, BITMAP_HEIGHT);
+        view.setAvailableSize(AVAILABLE_WIDTH, AVAILABLE_HEIGHT);
+        view.setClickable(true);
+        return view;
+    }
+
+    /**
+     * 当前线程已分配的字节数，依赖HotSpot的com.sun.management扩展
+     */
+    private static class AllocationCounter {
+        private final com.sun.management.ThreadMXBean mBean;
+        private final long mThreadId = Thread.currentThread().getId();
+
+        /**
+         * 连续两次读取之间的固有分配，从测量值中扣除
+         */
+        long overhead;
+
+        private AllocationCounter(com.sun.management.ThreadMXBean bean) {
+            mBean = bean;
+        }
+
+        static AllocationCounter create() {
+            if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (!bean.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            bean.setThreadAllocatedMemoryEnabled(true);
+            AllocationCounter counter = new AllocationCounter(bean);
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < 100; i++) {
+                long start = counter.get();
+                min = Math.min(min, counter.get() - start);
+            }
+            counter.overhead = min;
+            return counter;
+        }
+
+        long get() {
+            return mBean.getThreadAllocatedBytes(mThreadId);
+        }
+    }
+}